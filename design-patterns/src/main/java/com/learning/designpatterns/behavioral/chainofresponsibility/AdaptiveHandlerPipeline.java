@@ -0,0 +1,214 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pipeline that learns a cheaper order for its Reorderable stages. A sample of requests is
+ * timed per stage. On a sampled request the Reorderable stages after a rejection still run
+ * (they have no side effects), so every rejection rate is measured over the same requests
+ * rather than only over those that got past the stages in front; stages that must run after
+ * one that rejected or did not run are skipped, since they rely on it having passed. Every
+ * reorderInterval samples, each run of consecutive Reorderable stages is re-sorted by cost
+ * divided by rejection probability, which minimises the expected cost of a sequence of
+ * independent filters. Stages that are not Reorderable stay where they were declared, and
+ * mustRunBefore constraints are always respected.
+ *
+ * run still reports stages by their declared index, so stage(i) is stable across reorders.
+ */
+public class AdaptiveHandlerPipeline extends HandlerPipeline {
+    private static final int SAMPLE_RATE = 16;
+
+    // before[a][b]: a must run before b, directly or through other constraints
+    private final boolean[][] before;
+    private final LongAdder[] calls;
+    private final LongAdder[] rejections;
+    private final LongAdder[] nanos;
+    private final AtomicInteger samples = new AtomicInteger();
+    private final int reorderInterval;
+    private volatile int[] order;
+
+    public AdaptiveHandlerPipeline(int reorderInterval, BaseHandler... stages){
+        super(stages.clone());
+        if (reorderInterval <= 0){
+            throw new IllegalArgumentException("reorderInterval must be positive");
+        }
+        int n = stages.length;
+        this.reorderInterval = reorderInterval;
+        this.before = new boolean[n][n];
+        this.calls = new LongAdder[n];
+        this.rejections = new LongAdder[n];
+        this.nanos = new LongAdder[n];
+        int[] initial = new int[n];
+        for (int i = 0; i < n; i++){
+            calls[i] = new LongAdder();
+            rejections[i] = new LongAdder();
+            nanos[i] = new LongAdder();
+            initial[i] = i;
+        }
+        this.order = initial;
+    }
+
+    /**
+     * Requires first to run before second, e.g. the user-exists check before the password check.
+     * first must already be declared before second.
+     */
+    public AdaptiveHandlerPipeline mustRunBefore(BaseHandler first, BaseHandler second){
+        int a = indexOf(first);
+        int b = indexOf(second);
+        if (a >= b){
+            throw new IllegalArgumentException(first.getClass().getSimpleName()
+                    + " must be declared before " + second.getClass().getSimpleName());
+        }
+        int n = stages.length;
+        for (int x = 0; x < n; x++){
+            if (x != a && !before[x][a]){
+                continue;
+            }
+            for (int y = 0; y < n; y++){
+                if (y == b || before[b][y]){
+                    before[x][y] = true;
+                }
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public int run(String username, String password){
+        final int[] order = this.order;
+        if (ThreadLocalRandom.current().nextInt(SAMPLE_RATE) != 0){
+            for (int stage : order){
+                if (!stages[stage].evaluate(username, password)){
+                    return stage;
+                }
+            }
+            return PASSED;
+        }
+        int rejectedBy = PASSED;
+        // stages that rejected or were skipped on this request
+        boolean[] failed = new boolean[stages.length];
+        for (int stage : order){
+            BaseHandler handler = stages[stage];
+            boolean measureOnly = rejectedBy != PASSED;
+            if (measureOnly && (!(handler instanceof Reorderable) || dependsOnFailed(stage, failed))){
+                failed[stage] = true;
+                continue;
+            }
+            long start = System.nanoTime();
+            boolean passed = measureOnly ? handler.check(username, password) : handler.evaluate(username, password);
+            nanos[stage].add(System.nanoTime() - start);
+            calls[stage].increment();
+            if (!passed){
+                rejections[stage].increment();
+                failed[stage] = true;
+                if (!measureOnly){
+                    rejectedBy = stage;
+                }
+            }
+        }
+        if (samples.incrementAndGet() % reorderInterval == 0){
+            reorder();
+        }
+        return rejectedBy;
+    }
+
+    @Override
+    public boolean[] runBatch(String[] usernames, String[] passwords){
+        boolean[] passed = new boolean[usernames.length];
+        Arrays.fill(passed, true);
+        for (int stage : order){
+            stages[stage].evaluateBatch(usernames, passwords, passed);
+        }
+        return passed;
+    }
+
+    /**
+     * Current execution order as declared stage indexes.
+     */
+    public int[] currentOrder(){
+        return order.clone();
+    }
+
+    synchronized void reorder(){
+        int n = stages.length;
+        double[] rank = new double[n];
+        for (int i = 0; i < n; i++){
+            long c = calls[i].sumThenReset();
+            long r = rejections[i].sumThenReset();
+            long t = nanos[i].sumThenReset();
+            double cost = c == 0 ? 0 : (double) t / c;
+            double rejectProbability = c == 0 ? 0 : (double) r / c;
+            rank[i] = c == 0 ? Double.MAX_VALUE : cost / Math.max(rejectProbability, 1e-6);
+        }
+        int[] current = order;
+        int[] next = new int[n];
+        int start = 0;
+        while (start < n){
+            if (!(stages[current[start]] instanceof Reorderable)){
+                next[start] = current[start];
+                start++;
+                continue;
+            }
+            int end = start;
+            while (end < n && stages[current[end]] instanceof Reorderable){
+                end++;
+            }
+            sortSegment(current, next, start, end, rank);
+            start = end;
+        }
+        order = next;
+    }
+
+    /**
+     * Greedy topological sort: repeatedly place the lowest-ranked stage whose predecessors
+     * within the segment are already placed.
+     */
+    private void sortSegment(int[] current, int[] next, int start, int end, double[] rank){
+        boolean[] placed = new boolean[stages.length];
+        for (int position = start; position < end; position++){
+            int best = -1;
+            for (int i = start; i < end; i++){
+                int candidate = current[i];
+                if (placed[candidate] || !predecessorsPlaced(candidate, current, start, end, placed)){
+                    continue;
+                }
+                if (best < 0 || rank[candidate] < rank[best]){
+                    best = candidate;
+                }
+            }
+            placed[best] = true;
+            next[position] = best;
+        }
+    }
+
+    private boolean dependsOnFailed(int stage, boolean[] failed){
+        for (int other = 0; other < stages.length; other++){
+            if (failed[other] && before[other][stage]){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean predecessorsPlaced(int stage, int[] current, int start, int end, boolean[] placed){
+        for (int i = start; i < end; i++){
+            int other = current[i];
+            if (before[other][stage] && !placed[other]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(BaseHandler handler){
+        for (int i = 0; i < stages.length; i++){
+            if (stages[i] == handler){
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Handler is not part of this pipeline");
+    }
+}
@@ -0,0 +1,163 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking variant of AuthService. Handlers are grouped into stages: stages run one
+ * after another, while the handlers inside one stage run concurrently. Putting handlers in one
+ * stage with alongside declares them independent, e.g. the password check and the role lookup:
+ * neither relies on the other having passed, and any side effects of one, like the password
+ * check's logging, may happen even when the other rejects the login.
+ *
+ * Every handler has its own timeout, counted from when it starts running, so time spent queued
+ * for a thread does not count against it; running out of time counts as a rejection and
+ * interrupts the handler. The first rejection in a stage decides the login and interrupts the
+ * handlers still running. An exception thrown by a handler is a bug, not a rejection, and
+ * fails the returned future.
+ */
+public class AsyncAuthService {
+    private final List<List<TimedHandler>> stages = new ArrayList<>();
+    private final ExecutorService executor;
+
+    public AsyncAuthService(){
+        this(defaultExecutor());
+    }
+
+    public AsyncAuthService(ExecutorService executor){
+        this.executor = executor;
+    }
+
+    /**
+     * Starts a new stage that only runs once every earlier stage has passed.
+     */
+    public AsyncAuthService then(BaseHandler handler, Duration timeout){
+        stages.add(new ArrayList<>());
+        return alongside(handler, timeout);
+    }
+
+    /**
+     * Adds a handler to the current stage, to run concurrently with the others in it. Only
+     * add handlers that do not depend on each other's result.
+     */
+    public AsyncAuthService alongside(BaseHandler handler, Duration timeout){
+        if (stages.isEmpty()){
+            stages.add(new ArrayList<>());
+        }
+        stages.get(stages.size() - 1).add(new TimedHandler(handler, timeout.toNanos()));
+        return this;
+    }
+
+    public CompletableFuture<AuthResult> login(String email, String password){
+        CompletableFuture<AuthResult> result = CompletableFuture.completedFuture(AuthResult.success());
+        for (List<TimedHandler> stage : stages){
+            result = result.thenCompose(previous -> previous.isAuthenticated()
+                    ? runStage(stage, email, password)
+                    : CompletableFuture.completedFuture(previous));
+        }
+        return result;
+    }
+
+    public void shutdown(){
+        executor.shutdown();
+    }
+
+    private CompletableFuture<AuthResult> runStage(List<TimedHandler> stage, String email, String password){
+        List<Future<?>> tasks = new CopyOnWriteArrayList<>();
+        CompletableFuture<AuthResult> outcome = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(stage.size());
+        for (TimedHandler timed : stage){
+            runHandler(timed, email, password, tasks).whenComplete((result, error) -> {
+                if (error != null){
+                    outcome.completeExceptionally(error);
+                } else if (!result.isAuthenticated()){
+                    outcome.complete(result);
+                } else if (pending.decrementAndGet() == 0){
+                    outcome.complete(AuthResult.success());
+                }
+            });
+        }
+        // once the stage is decided, the handlers still running are of no use
+        outcome.whenComplete((result, error) -> tasks.forEach(task -> task.cancel(true)));
+        return outcome;
+    }
+
+    private CompletableFuture<AuthResult> runHandler(TimedHandler timed, String email, String password,
+                                                     List<Future<?>> tasks){
+        BaseHandler handler = timed.handler;
+        CompletableFuture<AuthResult> promise = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                // the timeout starts now rather than when the handler was queued
+                promise.orTimeout(timed.timeoutNanos, TimeUnit.NANOSECONDS);
+                try {
+                    promise.complete(handler.evaluate(email, password)
+                            ? AuthResult.success()
+                            : AuthResult.rejected(handler));
+                } catch (Throwable e) {
+                    promise.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        tasks.add(task);
+        return promise
+                .handle((result, error) -> {
+                    if (error == null){
+                        return result;
+                    }
+                    task.cancel(true);
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause instanceof TimeoutException){
+                        return AuthResult.timedOut(handler);
+                    }
+                    throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(cause);
+                });
+    }
+
+    /**
+     * Uses a virtual thread per task when the runtime supports it (Java 21+), otherwise a
+     * bounded pool of daemon threads; when its queue is full, logins fail fast with a
+     * RejectedExecutionException instead of piling up threads.
+     */
+    private static ExecutorService defaultExecutor(){
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(10_000), runnable -> {
+                        Thread thread = new Thread(runnable, "auth-handler");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    private static final class TimedHandler {
+        private final BaseHandler handler;
+        private final long timeoutNanos;
+
+        private TimedHandler(BaseHandler handler, long timeoutNanos){
+            this.handler = handler;
+            this.timeoutNanos = timeoutNanos;
+        }
+    }
+}
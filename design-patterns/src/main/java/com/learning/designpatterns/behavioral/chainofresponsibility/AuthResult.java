@@ -0,0 +1,51 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+public final class AuthResult {
+    private static final AuthResult SUCCESS = new AuthResult(true, null, false);
+
+    private final boolean authenticated;
+    private final BaseHandler rejectedBy;
+    private final boolean timedOut;
+
+    private AuthResult(boolean authenticated, BaseHandler rejectedBy, boolean timedOut){
+        this.authenticated = authenticated;
+        this.rejectedBy = rejectedBy;
+        this.timedOut = timedOut;
+    }
+
+    public static AuthResult success(){
+        return SUCCESS;
+    }
+
+    public static AuthResult rejected(BaseHandler handler){
+        return new AuthResult(false, handler, false);
+    }
+
+    public static AuthResult timedOut(BaseHandler handler){
+        return new AuthResult(false, handler, true);
+    }
+
+    public boolean isAuthenticated(){
+        return authenticated;
+    }
+
+    /**
+     * The handler that rejected the login or ran out of time, null on success.
+     */
+    public BaseHandler getRejectedBy(){
+        return rejectedBy;
+    }
+
+    public boolean isTimedOut(){
+        return timedOut;
+    }
+
+    @Override
+    public String toString(){
+        if (authenticated){
+            return "AuthResult[authenticated]";
+        }
+        return "AuthResult[" + (timedOut ? "timed out in " : "rejected by ")
+                + rejectedBy.getClass().getSimpleName() + "]";
+    }
+}
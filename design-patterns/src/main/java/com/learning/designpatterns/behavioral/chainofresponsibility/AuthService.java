@@ -1,19 +1,45 @@
 package com.learning.designpatterns.behavioral.chainofresponsibility;
 
+import java.util.List;
+
 public class AuthService {
-    private BaseHandler handler;
+    private final HandlerPipeline pipeline;
 
     AuthService(BaseHandler handler){
-        this.handler = handler;
+        this(HandlerPipeline.compile(handler));
+    }
+
+    AuthService(HandlerPipeline pipeline){
+        this.pipeline = pipeline;
     }
 
     public boolean login(String email, String password){
-        if(handler.handleRequest(email, password)){
+        if(authenticate(email, password).isAuthenticated()){
             // logic related to authenticated users
             return true;
         }
         return false;
     }
 
+    /**
+     * Logs in and reports the handler that rejected the login. The pipeline runs once, so
+     * the result is the stage this very attempt stopped at.
+     */
+    public AuthResult authenticate(String email, String password){
+        return pipeline.authenticate(email, password);
+    }
+
+    /**
+     * Logs in a burst of users at once. The result is aligned with the given list.
+     */
+    public boolean[] loginBatch(List<Credentials> credentials){
+        String[] usernames = new String[credentials.size()];
+        String[] passwords = new String[credentials.size()];
+        for (int i = 0; i < usernames.length; i++){
+            usernames[i] = credentials.get(i).getUsername();
+            passwords[i] = credentials.get(i).getPassword();
+        }
+        return pipeline.runBatch(usernames, passwords);
+    }
 
 }
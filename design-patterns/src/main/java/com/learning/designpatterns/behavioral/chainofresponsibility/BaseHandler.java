@@ -3,14 +3,100 @@ package com.learning.designpatterns.behavioral.chainofresponsibility;
 import java.util.Objects;
 
 public abstract class BaseHandler{
+    // only asked whether the JFR event is enabled, so no event is allocated while it is off
+    private static final HandlerEvent EVENT_TYPE = new HandlerEvent();
+
     private BaseHandler next;
+    private volatile HandlerMetrics metrics;
 
     public BaseHandler setNextHandler(BaseHandler next){
         this.next = next;
         return this;
     }
 
-    public abstract boolean handleRequest(String username, String password);
+    BaseHandler getNextHandler(){
+        return next;
+    }
+
+    public BaseHandler setMetrics(HandlerMetrics metrics){
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Runs check, recording metrics and a JFR event when metrics are enabled.
+     */
+    final boolean evaluate(String username, String password){
+        HandlerMetrics metrics = this.metrics;
+        if (metrics == null){
+            return check(username, password);
+        }
+        HandlerEvent event = EVENT_TYPE.isEnabled() ? new HandlerEvent() : null;
+        if (event != null){
+            event.begin();
+        }
+        long start = System.nanoTime();
+        boolean passed = check(username, password);
+        metrics.record(this, passed, System.nanoTime() - start);
+        if (event != null){
+            event.end();
+        }
+        if (event != null && event.shouldCommit()){
+            event.handler = getClass().getSimpleName();
+            event.passed = passed;
+            event.commit();
+        }
+        return passed;
+    }
+
+    /**
+     * Runs only this handler's own check, without passing the request along the chain.
+     */
+    public abstract boolean check(String username, String password);
+
+    /**
+     * Runs this handler's check over a whole batch. Entries whose flag in passed is already
+     * false are skipped; rejected entries get their flag cleared. Handlers backed by a
+     * Database override this to look up the whole batch at once.
+     */
+    public void checkBatch(String[] usernames, String[] passwords, boolean[] passed){
+        for (int i = 0; i < usernames.length; i++){
+            if (passed[i] && !check(usernames[i], passwords[i])){
+                passed[i] = false;
+            }
+        }
+    }
+
+    final void evaluateBatch(String[] usernames, String[] passwords, boolean[] passed){
+        HandlerMetrics metrics = this.metrics;
+        if (metrics == null){
+            checkBatch(usernames, passwords, passed);
+            return;
+        }
+        int pending = count(passed);
+        long start = System.nanoTime();
+        checkBatch(usernames, passwords, passed);
+        long nanos = System.nanoTime() - start;
+        int stillPassing = count(passed);
+        metrics.recordBatch(this, stillPassing, pending - stillPassing, nanos);
+    }
+
+    private static int count(boolean[] flags){
+        int count = 0;
+        for (boolean flag : flags){
+            if (flag){
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public boolean handleRequest(String username, String password){
+        if(!evaluate(username, password)){
+            return false;
+        }
+        return handleNext(username, password);
+    }
 
     protected boolean handleNext(String username, String password){
         if (Objects.nonNull(next)){
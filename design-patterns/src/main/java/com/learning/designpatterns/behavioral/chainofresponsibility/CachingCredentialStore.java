@@ -0,0 +1,286 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decorator that caches CredentialStore lookups for a limited time; use it as
+ * new Database(new CachingCredentialStore(store, ...)). Unknown usernames are cached too, so
+ * repeated attempts with the same made-up names never reach the real store. Only successful
+ * password checks are cached, as a salted digest rather than the password itself.
+ *
+ * The cache holds at most maxEntries users and makes room with the CLOCK algorithm: every hit
+ * marks its entry, and the clock hand evicts the first unmarked (or expired) entry it passes,
+ * clearing marks on the way. Hits take no lock; a miss takes the clock lock for O(1) amortised
+ * work. Every put goes through the cache and bumps the user's generation, and a lookup that
+ * started before the bump is not cached, so an old password cannot be cached again after a
+ * change.
+ */
+public class CachingCredentialStore implements CredentialStore {
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final CredentialStore delegate;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final byte[] digestSalt = PasswordHasher.newSalt();
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(CachingCredentialStore::newDigest);
+
+    // per user (striped) count of password changes, see store
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    // guarded by itself
+    private final Entry[] clock;
+    private int hand;
+    private int used;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingCredentialStore(CredentialStore delegate, int maxEntries, long ttl, TimeUnit unit){
+        if (maxEntries <= 0 || ttl <= 0){
+            throw new IllegalArgumentException("maxEntries and ttl must be positive");
+        }
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.clock = new Entry[maxEntries];
+    }
+
+    @Override
+    public boolean contains(String username){
+        Entry entry = lookup(username);
+        if (entry != null){
+            return entry.exists;
+        }
+        long generation = generation(username);
+        boolean exists = delegate.contains(username);
+        store(username, exists, null, generation);
+        return exists;
+    }
+
+    @Override
+    public boolean verify(String username, String password){
+        byte[] digest = digest(password);
+        Entry entry = lookup(username);
+        if (entry != null){
+            if (!entry.exists){
+                return false;
+            }
+            if (entry.passwordDigest != null && MessageDigest.isEqual(entry.passwordDigest, digest)){
+                return true;
+            }
+        }
+        long generation = generation(username);
+        boolean valid = delegate.verify(username, password);
+        if (valid){
+            store(username, true, digest, generation);
+        }
+        return valid;
+    }
+
+    @Override
+    public void contains(String[] usernames, boolean[] found){
+        boolean[] missing = new boolean[usernames.length];
+        long[] generations = new long[usernames.length];
+        int missed = 0;
+        for (int i = 0; i < usernames.length; i++){
+            if (!found[i]){
+                continue;
+            }
+            Entry entry = lookup(usernames[i]);
+            if (entry == null){
+                missing[i] = true;
+                generations[i] = generation(usernames[i]);
+                missed++;
+            } else if (!entry.exists){
+                found[i] = false;
+            }
+        }
+        if (missed == 0){
+            return;
+        }
+        boolean[] exists = missing.clone();
+        delegate.contains(usernames, exists);
+        for (int i = 0; i < usernames.length; i++){
+            if (missing[i]){
+                found[i] = exists[i];
+                store(usernames[i], exists[i], null, generations[i]);
+            }
+        }
+    }
+
+    @Override
+    public void put(String username, String password){
+        delegate.put(username, password);
+        invalidate(username);
+    }
+
+    @Override
+    public void putHashed(String username, byte[] salt, byte[] hash){
+        delegate.putHashed(username, salt, hash);
+        invalidate(username);
+    }
+
+    @Override
+    public int size(){
+        return delegate.size();
+    }
+
+    @Override
+    public void forEach(EntryVisitor visitor){
+        delegate.forEach(visitor);
+    }
+
+    public void invalidate(String username){
+        synchronized (clock){
+            generations.incrementAndGet(stripe(username));
+            Entry entry = cache.remove(username);
+            if (entry != null){
+                release(entry);
+            }
+        }
+    }
+
+    public void invalidateAll(){
+        synchronized (clock){
+            for (int i = 0; i < GENERATION_STRIPES; i++){
+                generations.incrementAndGet(i);
+            }
+            cache.clear();
+            Arrays.fill(clock, null);
+            used = 0;
+            hand = 0;
+        }
+    }
+
+    public long getHits(){
+        return hits.sum();
+    }
+
+    public long getMisses(){
+        return misses.sum();
+    }
+
+    public long getEvictions(){
+        return evictions.sum();
+    }
+
+    /**
+     * Number of cached users.
+     */
+    public int cachedUsers(){
+        return cache.size();
+    }
+
+    private Entry lookup(String username){
+        Entry entry = cache.get(username);
+        if (entry == null || entry.expiresAt - System.nanoTime() <= 0){
+            // an expired entry stays until the clock hand or the next store replaces it
+            misses.increment();
+            return null;
+        }
+        if (!entry.referenced){
+            entry.referenced = true;
+        }
+        hits.increment();
+        return entry;
+    }
+
+    /**
+     * Caches the result of a delegate lookup that started at the given generation, unless the
+     * user's password changed in the meantime.
+     */
+    private void store(String username, boolean exists, byte[] passwordDigest, long generation){
+        Entry entry = new Entry(username, exists, passwordDigest, System.nanoTime() + ttlNanos);
+        synchronized (clock){
+            if (generations.get(stripe(username)) != generation){
+                return;
+            }
+            Entry old = cache.get(username);
+            if (old != null){
+                entry.slot = old.slot;
+            } else {
+                entry.slot = claimSlot();
+            }
+            clock[entry.slot] = entry;
+            cache.put(username, entry);
+        }
+    }
+
+    // called with the clock lock held
+    private int claimSlot(){
+        if (used < maxEntries){
+            return used++;
+        }
+        long now = System.nanoTime();
+        while (true){
+            Entry candidate = clock[hand];
+            int slot = hand;
+            hand = hand + 1 == maxEntries ? 0 : hand + 1;
+            if (candidate == null){
+                return slot;
+            }
+            if (candidate.referenced && candidate.expiresAt - now > 0){
+                candidate.referenced = false;
+                continue;
+            }
+            cache.remove(candidate.username, candidate);
+            evictions.increment();
+            return slot;
+        }
+    }
+
+    // called with the clock lock held
+    private void release(Entry entry){
+        if (clock[entry.slot] == entry){
+            clock[entry.slot] = null;
+        }
+    }
+
+    private long generation(String username){
+        return generations.get(stripe(username));
+    }
+
+    private static int stripe(String username){
+        return (username.hashCode() * 0x9E3779B9 >>> 22) & (GENERATION_STRIPES - 1);
+    }
+
+    private byte[] digest(String password){
+        MessageDigest digest = digests.get();
+        digest.update(digestSalt);
+        return digest.digest(password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MessageDigest newDigest(){
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class Entry {
+        private final String username;
+        private final boolean exists;
+        private final byte[] passwordDigest;
+        private final long expiresAt;
+        private int slot;
+        // set on every hit, cleared by the passing clock hand
+        private volatile boolean referenced;
+
+        private Entry(String username, boolean exists, byte[] passwordDigest, long expiresAt){
+            this.username = username;
+            this.exists = exists;
+            this.passwordDigest = passwordDigest;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+/**
+ * Storage for salted password hashes behind the Database used by the auth chain.
+ */
+public interface CredentialStore {
+    boolean contains(String username);
+
+    /**
+     * Returns false for unknown users as well as for wrong passwords.
+     */
+    boolean verify(String username, String password);
+
+    /**
+     * Bulk variant of contains: clears found[i] for every unknown username. Entries whose
+     * flag is already false are skipped.
+     */
+    default void contains(String[] usernames, boolean[] found){
+        for (int i = 0; i < usernames.length; i++){
+            if (found[i] && !contains(usernames[i])){
+                found[i] = false;
+            }
+        }
+    }
+
+    /**
+     * Bulk variant of verify: clears valid[i] for every wrong or unknown password. Entries
+     * whose flag is already false are skipped.
+     */
+    default void verify(String[] usernames, String[] passwords, boolean[] valid){
+        for (int i = 0; i < usernames.length; i++){
+            if (valid[i] && !verify(usernames[i], passwords[i])){
+                valid[i] = false;
+            }
+        }
+    }
+
+    void put(String username, String password);
+
+    void putHashed(String username, byte[] salt, byte[] hash);
+
+    int size();
+
+    void forEach(EntryVisitor visitor);
+
+    interface EntryVisitor {
+        void visit(String username, byte[] salt, byte[] hash);
+    }
+}
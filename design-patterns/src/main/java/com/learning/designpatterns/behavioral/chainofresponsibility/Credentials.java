@@ -0,0 +1,19 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+public final class Credentials {
+    private final String username;
+    private final String password;
+
+    public Credentials(String username, String password){
+        this.username = username;
+        this.password = password;
+    }
+
+    public String getUsername(){
+        return username;
+    }
+
+    public String getPassword(){
+        return password;
+    }
+}
@@ -1,22 +1,48 @@
 package com.learning.designpatterns.behavioral.chainofresponsibility;
 
-import java.util.HashMap;
-import java.util.Map;
-
 public class Database {
-    private final Map<String, String> users = new HashMap<>();
+    private final CredentialStore users;
 
     Database(){
+        // two demo users do not need the default 64 stripes
+        this(new StripedCredentialStore(1, 8));
         users.put("admin", "admin");
         users.put("user", "user");
     }
 
+    Database(CredentialStore users){
+        this.users = users;
+    }
+
+    CredentialStore getCredentialStore(){
+        return users;
+    }
+
     public boolean isValidUser(String username){
-        return users.containsKey(username);
+        return users.contains(username);
     }
 
     public boolean isValidPassword(String username, String password){
-        return users.get(username).equals(password);
+        return users.verify(username, password);
+    }
+
+    public void updatePassword(String username, String password){
+        users.put(username, password);
+    }
+
+    /**
+     * Bulk variant of isValidUser: clears valid[i] for every unknown username. The store
+     * looks the whole batch up at once, e.g. one lock acquisition per stripe.
+     */
+    public void isValidUser(String[] usernames, boolean[] valid){
+        users.contains(usernames, valid);
+    }
+
+    /**
+     * Bulk variant of isValidPassword: clears valid[i] for every wrong or unknown password.
+     */
+    public void isValidPassword(String[] usernames, String[] passwords, boolean[] valid){
+        users.verify(usernames, passwords, valid);
     }
 
 }
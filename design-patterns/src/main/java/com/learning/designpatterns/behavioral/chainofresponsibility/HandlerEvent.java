@@ -0,0 +1,17 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.learning.designpatterns.HandlerCheck")
+@Label("Auth Handler Check")
+@Category({"Design Patterns", "Chain of Responsibility"})
+class HandlerEvent extends Event {
+    @Label("Handler")
+    String handler;
+
+    @Label("Passed")
+    boolean passed;
+}
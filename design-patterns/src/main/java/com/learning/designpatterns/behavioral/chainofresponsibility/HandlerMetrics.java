@@ -0,0 +1,142 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per handler call, pass/reject and latency statistics. Every handler instance is tracked on
+ * its own; two handlers of the same class show up as e.g. "UserVerificationHandler" and
+ * "UserVerificationHandler#2". Counters are LongAdders so
+ * concurrent logins do not contend on a single cache line. Latencies go into a histogram
+ * of power-of-two nanosecond buckets.
+ */
+public class HandlerMetrics {
+    private static final int BUCKETS = 40;
+
+    private final Map<BaseHandler, Stats> stats = new ConcurrentHashMap<>();
+
+    void record(BaseHandler handler, boolean passed, long nanos){
+        Stats s = stats.get(handler);
+        if (s == null){
+            s = stats.computeIfAbsent(handler, c -> new Stats());
+        }
+        (passed ? s.passed : s.rejected).increment();
+        s.totalNanos.add(nanos);
+        s.histogram[bucket(nanos)].increment();
+    }
+
+    /**
+     * Records a batch run, spreading the batch time evenly over its requests.
+     */
+    void recordBatch(BaseHandler handler, int passed, int rejected, long nanos){
+        int requests = passed + rejected;
+        if (requests == 0){
+            return;
+        }
+        Stats s = stats.computeIfAbsent(handler, c -> new Stats());
+        s.passed.add(passed);
+        s.rejected.add(rejected);
+        s.totalNanos.add(nanos);
+        s.histogram[bucket(nanos / requests)].add(requests);
+    }
+
+    public Map<String, Snapshot> snapshot(){
+        Map<String, Snapshot> snapshot = new LinkedHashMap<>();
+        stats.forEach((handler, s) -> {
+            String name = handler.getClass().getSimpleName();
+            for (int n = 2; snapshot.containsKey(name); n++){
+                name = handler.getClass().getSimpleName() + "#" + n;
+            }
+            snapshot.put(name, s.snapshot());
+        });
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    public void reset(){
+        stats.clear();
+    }
+
+    private static int bucket(long nanos){
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)));
+    }
+
+    private static final class Stats {
+        private final LongAdder passed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+        private Stats(){
+            for (int i = 0; i < BUCKETS; i++){
+                histogram[i] = new LongAdder();
+            }
+        }
+
+        private Snapshot snapshot(){
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++){
+                counts[i] = histogram[i].sum();
+            }
+            return new Snapshot(passed.sum(), rejected.sum(), totalNanos.sum(), counts);
+        }
+    }
+
+    public static final class Snapshot {
+        private final long passed;
+        private final long rejected;
+        private final long totalNanos;
+        private final long[] histogram;
+
+        private Snapshot(long passed, long rejected, long totalNanos, long[] histogram){
+            this.passed = passed;
+            this.rejected = rejected;
+            this.totalNanos = totalNanos;
+            this.histogram = histogram;
+        }
+
+        public long getCalls(){
+            return passed + rejected;
+        }
+
+        public long getPassed(){
+            return passed;
+        }
+
+        public long getRejected(){
+            return rejected;
+        }
+
+        public double getMeanNanos(){
+            long calls = getCalls();
+            return calls == 0 ? 0 : (double) totalNanos / calls;
+        }
+
+        /**
+         * Upper bound of the histogram bucket holding the given percentile, e.g. 0.99.
+         */
+        public long getPercentileNanos(double percentile){
+            long calls = 0;
+            for (long count : histogram){
+                calls += count;
+            }
+            long target = (long) Math.ceil(calls * percentile);
+            long seen = 0;
+            for (int i = 0; i < histogram.length; i++){
+                seen += histogram[i];
+                if (seen >= target && seen > 0){
+                    return i == 0 ? 0 : 1L << i;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString(){
+            return "calls=" + getCalls() + ", passed=" + passed + ", rejected=" + rejected
+                    + ", mean=" + (long) getMeanNanos() + "ns, p99<=" + getPercentileNanos(0.99) + "ns";
+        }
+    }
+}
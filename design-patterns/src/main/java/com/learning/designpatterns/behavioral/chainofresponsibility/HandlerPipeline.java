@@ -0,0 +1,86 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A chain of handlers frozen into an array. Instead of every handler calling the next one
+ * recursively, the pipeline walks the stages in a plain loop and stops at the first rejection.
+ * Changing the links with setNextHandler after compiling has no effect on the pipeline.
+ * See AdaptiveHandlerPipeline for a variant that reorders its stages at runtime.
+ */
+public class HandlerPipeline {
+    public static final int PASSED = -1;
+
+    final BaseHandler[] stages;
+
+    HandlerPipeline(BaseHandler[] stages){
+        this.stages = stages;
+    }
+
+    public static HandlerPipeline compile(BaseHandler head){
+        List<BaseHandler> stages = new ArrayList<>();
+        for (BaseHandler handler = head; handler != null; handler = handler.getNextHandler()){
+            stages.add(handler);
+        }
+        return new HandlerPipeline(stages.toArray(new BaseHandler[0]));
+    }
+
+    public static HandlerPipeline of(BaseHandler... stages){
+        for (BaseHandler stage : stages){
+            Objects.requireNonNull(stage, "stage");
+        }
+        return new HandlerPipeline(stages.clone());
+    }
+
+    /**
+     * Returns the index of the first stage that rejected the request, or PASSED.
+     */
+    public int run(String username, String password){
+        final BaseHandler[] stages = this.stages;
+        for (int i = 0; i < stages.length; i++){
+            if (!stages[i].evaluate(username, password)){
+                return i;
+            }
+        }
+        return PASSED;
+    }
+
+    /**
+     * Runs the pipeline once and reports which stage, if any, rejected the request.
+     */
+    public AuthResult authenticate(String username, String password){
+        int stage = run(username, password);
+        return stage == PASSED ? AuthResult.success() : AuthResult.rejected(stages[stage]);
+    }
+
+    /**
+     * Runs every stage over the whole batch before moving to the next one, so each handler
+     * (and the Database behind it) sees all pending requests in a single pass.
+     */
+    public boolean[] runBatch(String[] usernames, String[] passwords){
+        boolean[] passed = new boolean[usernames.length];
+        Arrays.fill(passed, true);
+        for (BaseHandler stage : stages){
+            stage.evaluateBatch(usernames, passwords, passed);
+        }
+        return passed;
+    }
+
+    public HandlerPipeline instrument(HandlerMetrics metrics){
+        for (BaseHandler stage : stages){
+            stage.setMetrics(metrics);
+        }
+        return this;
+    }
+
+    public BaseHandler stage(int index){
+        return stages[index];
+    }
+
+    public int size(){
+        return stages.length;
+    }
+}
@@ -0,0 +1,239 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Credential store served straight from a memory-mapped file. The file is an open-addressed
+ * hash table of fixed-size slots, so opening it costs a few mmaps and lookups can start right
+ * away; the OS pages the table in on demand instead of the JVM rehashing every user onto the
+ * heap. A single mapping is limited to 2GB, so the slots are mapped in regions of 1GB and
+ * tables with tens of millions of users work too.
+ *
+ * The file itself is never modified. Password changes and new users go to an in-memory
+ * StripedCredentialStore that is consulted first; they are lost on restart unless the store is
+ * written out again with write.
+ *
+ * Layout: a 32 byte header (magic, version, capacity, count) followed by capacity slots of
+ * [int hash][byte name length][75 byte name][16 byte salt][32 byte hash].
+ */
+public class MappedCredentialStore implements CredentialStore {
+    private static final int MAGIC = 0x43524544; // "CRED"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 128;
+    private static final int MAX_NAME_LENGTH = 75;
+    private static final int NAME_OFFSET = 5;
+    private static final int SALT_OFFSET = NAME_OFFSET + MAX_NAME_LENGTH;
+    private static final int HASH_OFFSET = SALT_OFFSET + PasswordHasher.SALT_LENGTH;
+    private static final int REGION_SHIFT = 23;
+    private static final int REGION_SLOTS = 1 << REGION_SHIFT;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final MappedByteBuffer[] regions;
+    private final int capacity;
+    private final int count;
+    private final StripedCredentialStore changes = new StripedCredentialStore(16, 1024);
+    // users that exist only in changes
+    private final AtomicInteger added = new AtomicInteger();
+
+    private MappedCredentialStore(MappedByteBuffer[] regions, int capacity, int count){
+        this.regions = regions;
+        this.capacity = capacity;
+        this.count = count;
+    }
+
+    public static MappedCredentialStore open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(HEADER_SIZE, channel.size()));
+            if (header.capacity() < HEADER_SIZE || header.getInt(0) != MAGIC || header.getInt(4) != VERSION){
+                throw new IOException("Not a credential table file: " + file);
+            }
+            int capacity = header.getInt(8);
+            int count = header.getInt(12);
+            if (capacity <= 0 || capacity > MAX_CAPACITY || Integer.bitCount(capacity) != 1
+                    || count < 0 || count >= capacity
+                    || HEADER_SIZE + (long) capacity * SLOT_SIZE > channel.size()){
+                throw new IOException("Corrupt credential table header in " + file);
+            }
+            MappedByteBuffer[] regions = new MappedByteBuffer[(capacity + REGION_SLOTS - 1) >>> REGION_SHIFT];
+            for (int i = 0; i < regions.length; i++){
+                int slots = Math.min(REGION_SLOTS, capacity - i * REGION_SLOTS);
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, regionStart(i), (long) slots * SLOT_SIZE);
+                regions[i].order(ByteOrder.BIG_ENDIAN);
+            }
+            return new MappedCredentialStore(regions, capacity, count);
+        }
+    }
+
+    /**
+     * Writes every user of source into a new table file. The file is built next to the
+     * target and moved into place, so readers never map a half-written table.
+     */
+    public static void write(Path file, CredentialStore source) throws IOException {
+        // load factor of at most 3/4 keeps linear probing short and the file compact
+        long wanted = Math.max(16, (long) source.size() * 4 / 3 + 1);
+        if (wanted > MAX_CAPACITY){
+            throw new IllegalArgumentException("Too many users for a mapped table: " + source.size());
+        }
+        int capacity = Integer.highestOneBit((int) wanted - 1) << 1;
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            MappedByteBuffer[] regions = new MappedByteBuffer[(capacity + REGION_SLOTS - 1) >>> REGION_SHIFT];
+            for (int i = 0; i < regions.length; i++){
+                int slots = Math.min(REGION_SLOTS, capacity - i * REGION_SLOTS);
+                regions[i] = channel.map(FileChannel.MapMode.READ_WRITE, regionStart(i), (long) slots * SLOT_SIZE);
+            }
+            int[] count = new int[1];
+            source.forEach((username, salt, hash) -> {
+                byte[] name = username.getBytes(StandardCharsets.UTF_8);
+                if (name.length > MAX_NAME_LENGTH){
+                    throw new IllegalArgumentException("Username too long for mapped table: " + username);
+                }
+                int h = StripedCredentialStore.hash(name);
+                int slot = h & (capacity - 1);
+                while (region(regions, slot).getInt(slotOffset(slot)) != 0){
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                MappedByteBuffer region = region(regions, slot);
+                int offset = slotOffset(slot);
+                region.putInt(offset, h);
+                region.put(offset + 4, (byte) name.length);
+                region.put(offset + NAME_OFFSET, name);
+                region.put(offset + SALT_OFFSET, salt);
+                region.put(offset + HASH_OFFSET, hash);
+                count[0]++;
+            });
+            for (MappedByteBuffer region : regions){
+                region.force();
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putInt(8, capacity);
+            header.putInt(12, count[0]);
+            header.force();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public boolean contains(String username){
+        return changes.contains(username) || find(username.getBytes(StandardCharsets.UTF_8)) >= 0;
+    }
+
+    @Override
+    public boolean verify(String username, String password){
+        if (changes.contains(username)){
+            return changes.verify(username, password);
+        }
+        long position = find(username.getBytes(StandardCharsets.UTF_8));
+        if (position < 0){
+            return false;
+        }
+        MappedByteBuffer region = regions[(int) (position >>> 32)];
+        int offset = (int) position;
+        byte[] salt = new byte[PasswordHasher.SALT_LENGTH];
+        byte[] hash = new byte[PasswordHasher.HASH_LENGTH];
+        region.get(offset + SALT_OFFSET, salt);
+        region.get(offset + HASH_OFFSET, hash);
+        return PasswordHasher.matches(salt, hash, password);
+    }
+
+    @Override
+    public void put(String username, String password){
+        byte[] salt = PasswordHasher.newSalt();
+        putHashed(username, salt, PasswordHasher.hash(salt, password));
+    }
+
+    /**
+     * Records the change in memory; the mapped file is left as it is.
+     */
+    @Override
+    public synchronized void putHashed(String username, byte[] salt, byte[] hash){
+        boolean known = contains(username);
+        changes.putHashed(username, salt, hash);
+        if (!known){
+            added.incrementAndGet();
+        }
+    }
+
+    @Override
+    public int size(){
+        return count + added.get();
+    }
+
+    @Override
+    public void forEach(EntryVisitor visitor){
+        changes.forEach(visitor);
+        for (int slot = 0; slot < capacity; slot++){
+            MappedByteBuffer region = region(regions, slot);
+            int offset = slotOffset(slot);
+            if (region.getInt(offset) == 0){
+                continue;
+            }
+            byte[] name = new byte[region.get(offset + 4)];
+            region.get(offset + NAME_OFFSET, name);
+            String username = new String(name, StandardCharsets.UTF_8);
+            if (changes.contains(username)){
+                continue;
+            }
+            byte[] salt = new byte[PasswordHasher.SALT_LENGTH];
+            byte[] hash = new byte[PasswordHasher.HASH_LENGTH];
+            region.get(offset + SALT_OFFSET, salt);
+            region.get(offset + HASH_OFFSET, hash);
+            visitor.visit(username, salt, hash);
+        }
+    }
+
+    /**
+     * Returns the region index in the upper and the byte offset within the region in the
+     * lower 32 bits of the user's slot, or -1 when the user is not in the file.
+     */
+    private long find(byte[] name){
+        if (name.length > MAX_NAME_LENGTH){
+            return -1;
+        }
+        int h = StripedCredentialStore.hash(name);
+        byte[] candidate = new byte[name.length];
+        for (int slot = h & (capacity - 1); ; slot = (slot + 1) & (capacity - 1)){
+            MappedByteBuffer region = region(regions, slot);
+            int offset = slotOffset(slot);
+            int current = region.getInt(offset);
+            if (current == 0){
+                return -1;
+            }
+            if (current == h && region.get(offset + 4) == name.length){
+                region.get(offset + NAME_OFFSET, candidate);
+                if (Arrays.equals(candidate, name)){
+                    return ((long) (slot >>> REGION_SHIFT) << 32) | offset;
+                }
+            }
+        }
+    }
+
+    private static MappedByteBuffer region(MappedByteBuffer[] regions, int slot){
+        return regions[slot >>> REGION_SHIFT];
+    }
+
+    private static long regionStart(int region){
+        return HEADER_SIZE + (long) region * REGION_SLOTS * SLOT_SIZE;
+    }
+
+    private static int slotOffset(int slot){
+        return (slot & (REGION_SLOTS - 1)) * SLOT_SIZE;
+    }
+}
@@ -0,0 +1,51 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2-HMAC-SHA256. The iteration count makes every guess deliberately slow, so a
+ * leaked credential file cannot be brute-forced at hash speed; the factory is reused per thread.
+ */
+final class PasswordHasher {
+    static final int SALT_LENGTH = 16;
+    static final int HASH_LENGTH = 32;
+    static final int ITERATIONS = 210_000;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<SecretKeyFactory> FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 not available", e);
+        }
+    });
+
+    private PasswordHasher(){
+    }
+
+    static byte[] newSalt(){
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        return salt;
+    }
+
+    static byte[] hash(byte[] salt, String password){
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, ITERATIONS, HASH_LENGTH * 8);
+        try {
+            return FACTORY.get().generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot hash password", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    static boolean matches(byte[] salt, byte[] expectedHash, String password){
+        return MessageDigest.isEqual(expectedHash, hash(salt, password));
+    }
+}
@@ -1,5 +1,6 @@
 package com.learning.designpatterns.behavioral.chainofresponsibility;
 
+// Not Reorderable: it logs every rejection, so moving it would change what gets logged
 public class PasswordVerificationHandler extends BaseHandler{
     private final Database database;
 
@@ -8,12 +9,24 @@ public class PasswordVerificationHandler extends BaseHandler{
     }
 
     @Override
-    public boolean handleRequest(String username, String password) {
+    public boolean check(String username, String password) {
         if(!database.isValidPassword(username, password)){
             // write error to log and execute some custom logic
             System.out.println("Invalid password, returning to home page");
             return false;
         }
-        return handleNext(username, password);
+        return true;
+    }
+
+    @Override
+    public void checkBatch(String[] usernames, String[] passwords, boolean[] passed) {
+        boolean[] pending = passed.clone();
+        database.isValidPassword(usernames, passwords, passed);
+        for (int i = 0; i < passed.length; i++){
+            if (pending[i] && !passed[i]){
+                // same logging as a single login
+                System.out.println("Invalid password, returning to home page");
+            }
+        }
     }
 }
@@ -0,0 +1,141 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Throttles login attempts before they reach the Database. Each key (a username and,
+ * optionally, a source such as the client address) gets its own token bucket.
+ *
+ * A bucket is a single AtomicLong holding the time at which it will be full again, so taking
+ * a token is one compare-and-set and refilling happens lazily from the clock. An attempt must
+ * find a token in both its source and its user bucket before either is debited, so attempts
+ * that are rejected for the user do not use up the source's budget and vice versa.
+ *
+ * At most maxKeys buckets are tracked. Keys are kept in a ring; when it is full a new key
+ * replaces the least loaded of a few keys under the ring's hand (an idle, full bucket carries
+ * no state and goes first), so a flood of distinct usernames costs O(1) per key.
+ */
+public class RateLimitHandler extends BaseHandler {
+    private static final int EVICTION_SAMPLES = 8;
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxKeys;
+    private final Supplier<String> sourceKey;
+    // guarded by itself
+    private final String[] ring;
+    private int hand;
+    private int used;
+
+    public RateLimitHandler(int capacity, int refillPerSecond){
+        this(capacity, refillPerSecond, 100_000, null);
+    }
+
+    /**
+     * @param sourceKey supplies the source of the current attempt, for example from a
+     *                  request-scoped context; null limits by username only
+     */
+    public RateLimitHandler(int capacity, int refillPerSecond, int maxKeys, Supplier<String> sourceKey){
+        if (capacity <= 0 || refillPerSecond <= 0 || maxKeys <= 0){
+            throw new IllegalArgumentException("capacity, refillPerSecond and maxKeys must be positive");
+        }
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / refillPerSecond;
+        this.burstNanos = intervalNanos * capacity;
+        this.maxKeys = maxKeys;
+        this.sourceKey = sourceKey;
+        this.ring = new String[maxKeys];
+    }
+
+    @Override
+    public boolean check(String username, String password) {
+        long now = System.nanoTime();
+        String source = sourceKey == null ? null : sourceKey.get();
+        AtomicLong sourceBucket = source == null ? null : bucket("source:" + source, now);
+        AtomicLong userBucket = bucket("user:" + username, now);
+        if (sourceBucket != null && !hasToken(sourceBucket, now)){
+            System.out.println("Too many login attempts from " + source);
+            return false;
+        }
+        if (!hasToken(userBucket, now)){
+            System.out.println("Too many login attempts for " + username);
+            return false;
+        }
+        if (sourceBucket != null && !take(sourceBucket, now)){
+            System.out.println("Too many login attempts from " + source);
+            return false;
+        }
+        if (!take(userBucket, now)){
+            // another attempt took the user's last token in the meantime
+            if (sourceBucket != null){
+                sourceBucket.addAndGet(-intervalNanos);
+            }
+            System.out.println("Too many login attempts for " + username);
+            return false;
+        }
+        return true;
+    }
+
+    public int trackedKeys(){
+        return buckets.size();
+    }
+
+    private boolean hasToken(AtomicLong bucket, long now){
+        return Math.max(bucket.get(), now) + intervalNanos - now <= burstNanos;
+    }
+
+    private boolean take(AtomicLong bucket, long now){
+        while (true){
+            long fullAt = bucket.get();
+            long next = Math.max(fullAt, now) + intervalNanos;
+            if (next - now > burstNanos){
+                return false;
+            }
+            if (bucket.compareAndSet(fullAt, next)){
+                return true;
+            }
+        }
+    }
+
+    private AtomicLong bucket(String key, long now){
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null){
+            return bucket;
+        }
+        synchronized (ring){
+            bucket = buckets.get(key);
+            if (bucket != null){
+                return bucket;
+            }
+            int slot = used < maxKeys ? used++ : evict(now);
+            ring[slot] = key;
+            bucket = new AtomicLong(now);
+            buckets.put(key, bucket);
+            return bucket;
+        }
+    }
+
+    /**
+     * Removes the bucket that will be full soonest among the next few keys of the ring and
+     * returns its slot. Called with the ring lock held.
+     */
+    private int evict(long now){
+        int victim = hand;
+        long victimFullAt = buckets.get(ring[hand]).get();
+        for (int i = 0; i < Math.min(EVICTION_SAMPLES, maxKeys) && victimFullAt - now > 0; i++){
+            int slot = (hand + i) % maxKeys;
+            long fullAt = buckets.get(ring[slot]).get();
+            if (fullAt - victimFullAt < 0){
+                victim = slot;
+                victimFullAt = fullAt;
+            }
+        }
+        hand = (victim + 1) % maxKeys;
+        buckets.remove(ring[victim]);
+        return victim;
+    }
+}
@@ -0,0 +1,8 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+/**
+ * Marks a handler whose check is independent and free of side effects, so an
+ * AdaptiveHandlerPipeline may run it earlier or later than it was declared.
+ */
+public interface Reorderable {
+}
@@ -3,7 +3,7 @@ package com.learning.designpatterns.behavioral.chainofresponsibility;
 public class RoleVerificationHandler extends BaseHandler{
 
     @Override
-    public boolean handleRequest(String username, String password) {
+    public boolean check(String username, String password) {
         if("admin".equals(username)){
             // Fetch specific permissions related to admin
             System.out.println("Loading admin page");
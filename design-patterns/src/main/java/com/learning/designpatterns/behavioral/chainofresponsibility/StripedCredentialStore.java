@@ -0,0 +1,404 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Credential store split into independently locked stripes. Each stripe is an open-addressed
+ * table kept in primitive arrays: usernames live UTF-8 encoded in one byte arena and salts and
+ * hashes are packed into another, so there is no per-user object on the heap. Readers use
+ * optimistic StampedLock reads and are not blocked by writers on other stripes.
+ */
+public class StripedCredentialStore implements CredentialStore {
+    private static final int SECRET_LENGTH = PasswordHasher.SALT_LENGTH + PasswordHasher.HASH_LENGTH;
+    private static final char SEPARATOR = ':';
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    public StripedCredentialStore(){
+        this(64, 1024);
+    }
+
+    public StripedCredentialStore(int stripeCount, int expectedUsers){
+        int count = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        stripes = new Stripe[count];
+        int perStripe = Math.max(8, expectedUsers / count);
+        for (int i = 0; i < count; i++){
+            stripes[i] = new Stripe(perStripe);
+        }
+        stripeMask = count - 1;
+    }
+
+    /**
+     * Loads users from a file of "username:saltBase64:hashBase64" lines, as written by save.
+     */
+    public static StripedCredentialStore load(Path file, int expectedUsers) throws IOException {
+        StripedCredentialStore store = new StripedCredentialStore(64, expectedUsers);
+        Base64.Decoder decoder = Base64.getDecoder();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)){
+            String line;
+            while ((line = reader.readLine()) != null){
+                if (line.isEmpty()){
+                    continue;
+                }
+                int first = line.lastIndexOf(SEPARATOR, line.lastIndexOf(SEPARATOR) - 1);
+                int second = line.lastIndexOf(SEPARATOR);
+                if (first <= 0){
+                    throw new IOException("Malformed credential line: " + line);
+                }
+                store.putHashed(line.substring(0, first),
+                        decoder.decode(line.substring(first + 1, second)),
+                        decoder.decode(line.substring(second + 1)));
+            }
+        }
+        return store;
+    }
+
+    public void save(Path file) throws IOException {
+        Base64.Encoder encoder = Base64.getEncoder();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)){
+            forEach((username, salt, hash) -> {
+                try {
+                    writer.write(username + SEPARATOR + encoder.encodeToString(salt)
+                            + SEPARATOR + encoder.encodeToString(hash));
+                    writer.newLine();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public boolean contains(String username){
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(name);
+        return stripeFor(hash).read(name, hash, null);
+    }
+
+    @Override
+    public boolean verify(String username, String password){
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(name);
+        byte[] secret = new byte[SECRET_LENGTH];
+        if (!stripeFor(hash).read(name, hash, secret)){
+            return false;
+        }
+        byte[] salt = Arrays.copyOfRange(secret, 0, PasswordHasher.SALT_LENGTH);
+        byte[] expected = Arrays.copyOfRange(secret, PasswordHasher.SALT_LENGTH, SECRET_LENGTH);
+        return PasswordHasher.matches(salt, expected, password);
+    }
+
+    /**
+     * Groups the batch by stripe and probes each stripe's share under a single optimistic
+     * read, instead of one lock round trip per username.
+     */
+    @Override
+    public void contains(String[] usernames, boolean[] found){
+        readBatch(usernames, found, null);
+    }
+
+    /**
+     * Like contains, the stored secrets are read one stripe at a time; the passwords are then
+     * hashed outside of any lock.
+     */
+    @Override
+    public void verify(String[] usernames, String[] passwords, boolean[] valid){
+        byte[] secrets = new byte[usernames.length * SECRET_LENGTH];
+        readBatch(usernames, valid, secrets);
+        for (int i = 0; i < usernames.length; i++){
+            if (!valid[i]){
+                continue;
+            }
+            int base = i * SECRET_LENGTH;
+            byte[] salt = Arrays.copyOfRange(secrets, base, base + PasswordHasher.SALT_LENGTH);
+            byte[] expected = Arrays.copyOfRange(secrets, base + PasswordHasher.SALT_LENGTH, base + SECRET_LENGTH);
+            valid[i] = PasswordHasher.matches(salt, expected, passwords[i]);
+        }
+    }
+
+    private void readBatch(String[] usernames, boolean[] found, byte[] secrets){
+        byte[][] names = new byte[usernames.length][];
+        int[] hashes = new int[usernames.length];
+        int[] start = new int[stripes.length + 1];
+        for (int i = 0; i < usernames.length; i++){
+            if (found[i]){
+                names[i] = usernames[i].getBytes(StandardCharsets.UTF_8);
+                hashes[i] = hash(names[i]);
+                start[stripeIndex(hashes[i]) + 1]++;
+            }
+        }
+        for (int s = 0; s < stripes.length; s++){
+            start[s + 1] += start[s];
+        }
+        int[] members = new int[start[stripes.length]];
+        int[] cursor = Arrays.copyOf(start, stripes.length);
+        for (int i = 0; i < usernames.length; i++){
+            if (found[i]){
+                members[cursor[stripeIndex(hashes[i])]++] = i;
+            }
+        }
+        for (int s = 0; s < stripes.length; s++){
+            if (start[s] < start[s + 1]){
+                stripes[s].readBatch(names, hashes, members, start[s], start[s + 1], found, secrets);
+            }
+        }
+    }
+
+    @Override
+    public void put(String username, String password){
+        byte[] salt = PasswordHasher.newSalt();
+        putHashed(username, salt, PasswordHasher.hash(salt, password));
+    }
+
+    @Override
+    public void putHashed(String username, byte[] salt, byte[] hash){
+        if (salt.length != PasswordHasher.SALT_LENGTH || hash.length != PasswordHasher.HASH_LENGTH){
+            throw new IllegalArgumentException("Unexpected salt or hash length for " + username);
+        }
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        int h = hash(name);
+        stripeFor(h).write(name, h, salt, hash);
+    }
+
+    @Override
+    public int size(){
+        int size = 0;
+        for (Stripe stripe : stripes){
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void forEach(EntryVisitor visitor){
+        for (Stripe stripe : stripes){
+            stripe.forEach(visitor);
+        }
+    }
+
+    private Stripe stripeFor(int hash){
+        return stripes[stripeIndex(hash)];
+    }
+
+    private int stripeIndex(int hash){
+        return (hash >>> 24) & stripeMask;
+    }
+
+    static int hash(byte[] name){
+        int h = Arrays.hashCode(name) * 0x9E3779B9;
+        // 0 marks an empty slot
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * All arrays of one stripe, replaced as a whole when the stripe grows.
+     */
+    private static final class Table {
+        private final int[] hashes;
+        private final int[] nameOffsets;
+        private final byte[] secrets;
+        private final byte[] names;
+
+        private Table(int capacity, int namesCapacity){
+            hashes = new int[capacity];
+            nameOffsets = new int[capacity];
+            secrets = new byte[capacity * SECRET_LENGTH];
+            names = new byte[namesCapacity];
+        }
+    }
+
+    private static final class Stripe {
+        private final StampedLock lock = new StampedLock();
+        private Table table;
+        private int size;
+        private int namesUsed;
+
+        private Stripe(int expected){
+            int capacity = Integer.highestOneBit(Math.max(8, expected * 2 - 1) << 1);
+            table = new Table(capacity, capacity * 16);
+        }
+
+        private boolean read(byte[] name, int hash, byte[] secretOut){
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0){
+                try {
+                    boolean found = probe(table, name, hash, secretOut);
+                    if (lock.validate(stamp)){
+                        return found;
+                    }
+                } catch (RuntimeException e) {
+                    // torn read during a concurrent write, retry under the read lock
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return probe(table, name, hash, secretOut);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Looks up names[members[from..to)], all of which hash to this stripe, and stores the
+         * outcome in found. A torn optimistic pass is simply repeated under the read lock, as
+         * it only rewrites the same entries.
+         */
+        private void readBatch(byte[][] names, int[] hashes, int[] members, int from, int to,
+                               boolean[] found, byte[] secrets){
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0){
+                try {
+                    probeBatch(table, names, hashes, members, from, to, found, secrets);
+                    if (lock.validate(stamp)){
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    // torn read during a concurrent write, retry under the read lock
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                probeBatch(table, names, hashes, members, from, to, found, secrets);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private static void probeBatch(Table table, byte[][] names, int[] hashes, int[] members, int from, int to,
+                                       boolean[] found, byte[] secrets){
+            byte[] secret = secrets == null ? null : new byte[SECRET_LENGTH];
+            for (int m = from; m < to; m++){
+                int i = members[m];
+                found[i] = probe(table, names[i], hashes[i], secret);
+                if (found[i] && secret != null){
+                    System.arraycopy(secret, 0, secrets, i * SECRET_LENGTH, SECRET_LENGTH);
+                }
+            }
+        }
+
+        private static boolean probe(Table table, byte[] name, int hash, byte[] secretOut){
+            int mask = table.hashes.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask){
+                int current = table.hashes[slot];
+                if (current == 0){
+                    return false;
+                }
+                if (current == hash && nameEquals(table, slot, name)){
+                    if (secretOut != null){
+                        System.arraycopy(table.secrets, slot * SECRET_LENGTH, secretOut, 0, SECRET_LENGTH);
+                    }
+                    return true;
+                }
+            }
+        }
+
+        private void write(byte[] name, int hash, byte[] salt, byte[] passwordHash){
+            long stamp = lock.writeLock();
+            try {
+                if ((size + 1) * 4 > table.hashes.length * 3 || namesUsed + name.length + 2 > table.names.length){
+                    resize(name.length + 2);
+                }
+                Table t = table;
+                int mask = t.hashes.length - 1;
+                int slot = hash & mask;
+                while (t.hashes[slot] != 0 && !(t.hashes[slot] == hash && nameEquals(t, slot, name))){
+                    slot = (slot + 1) & mask;
+                }
+                System.arraycopy(salt, 0, t.secrets, slot * SECRET_LENGTH, PasswordHasher.SALT_LENGTH);
+                System.arraycopy(passwordHash, 0, t.secrets, slot * SECRET_LENGTH + PasswordHasher.SALT_LENGTH,
+                        PasswordHasher.HASH_LENGTH);
+                if (t.hashes[slot] == 0){
+                    t.nameOffsets[slot] = appendName(t, name);
+                    t.hashes[slot] = hash;
+                    size++;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private int appendName(Table t, byte[] name){
+            if (name.length > 0xFFFF){
+                throw new IllegalArgumentException("Username too long");
+            }
+            int offset = namesUsed;
+            t.names[offset] = (byte) (name.length >>> 8);
+            t.names[offset + 1] = (byte) name.length;
+            System.arraycopy(name, 0, t.names, offset + 2, name.length);
+            namesUsed += name.length + 2;
+            return offset;
+        }
+
+        private void resize(int extraNameBytes){
+            Table old = table;
+            int capacity = (size + 1) * 4 > old.hashes.length * 3 ? old.hashes.length * 2 : old.hashes.length;
+            Table grown = new Table(capacity, Math.max(old.names.length * 2, namesUsed + extraNameBytes));
+            int mask = capacity - 1;
+            namesUsed = 0;
+            for (int i = 0; i < old.hashes.length; i++){
+                if (old.hashes[i] == 0){
+                    continue;
+                }
+                int slot = old.hashes[i] & mask;
+                while (grown.hashes[slot] != 0){
+                    slot = (slot + 1) & mask;
+                }
+                grown.hashes[slot] = old.hashes[i];
+                System.arraycopy(old.secrets, i * SECRET_LENGTH, grown.secrets, slot * SECRET_LENGTH, SECRET_LENGTH);
+                grown.nameOffsets[slot] = appendName(grown, name(old, i));
+            }
+            table = grown;
+        }
+
+        private int size(){
+            long stamp = lock.readLock();
+            try {
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private void forEach(EntryVisitor visitor){
+            long stamp = lock.readLock();
+            try {
+                Table t = table;
+                for (int i = 0; i < t.hashes.length; i++){
+                    if (t.hashes[i] != 0){
+                        int base = i * SECRET_LENGTH;
+                        visitor.visit(new String(name(t, i), StandardCharsets.UTF_8),
+                                Arrays.copyOfRange(t.secrets, base, base + PasswordHasher.SALT_LENGTH),
+                                Arrays.copyOfRange(t.secrets, base + PasswordHasher.SALT_LENGTH, base + SECRET_LENGTH));
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private static byte[] name(Table t, int slot){
+            int offset = t.nameOffsets[slot];
+            int length = ((t.names[offset] & 0xFF) << 8) | (t.names[offset + 1] & 0xFF);
+            return Arrays.copyOfRange(t.names, offset + 2, offset + 2 + length);
+        }
+
+        private static boolean nameEquals(Table t, int slot, byte[] name){
+            int offset = t.nameOffsets[slot];
+            int length = ((t.names[offset] & 0xFF) << 8) | (t.names[offset + 1] & 0xFF);
+            return length == name.length
+                    && Arrays.equals(t.names, offset + 2, offset + 2 + length, name, 0, name.length);
+        }
+    }
+}
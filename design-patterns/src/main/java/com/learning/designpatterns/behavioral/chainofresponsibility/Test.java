@@ -1,14 +1,100 @@
 package com.learning.designpatterns.behavioral.chainofresponsibility;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 public class Test {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         Database db = new Database();
-        BaseHandler handler = new UserVerificationHandler(db)
-                .setNextHandler(new PasswordVerificationHandler(db)
-                        .setNextHandler(new RoleVerificationHandler()));
+        BaseHandler handler = new RateLimitHandler(5, 1)
+                .setNextHandler(new UserVerificationHandler(db)
+                        .setNextHandler(new PasswordVerificationHandler(db)
+                                .setNextHandler(new RoleVerificationHandler())));
         AuthService service = new AuthService(handler);
         service.login("admin", "admin");
         AuthService service2 = new AuthService(handler);
         service2.login("admin", "12345");
+        for (int i = 0; i < 5; i++){
+            service2.login("admin", "guess" + i);
+        }
+
+        HandlerMetrics metrics = new HandlerMetrics();
+        AuthService service3 = new AuthService(HandlerPipeline.of(
+                new UserVerificationHandler(db),
+                new PasswordVerificationHandler(db),
+                new RoleVerificationHandler()).instrument(metrics));
+        System.out.println(service3.authenticate("guest", "guest"));
+        service3.login("admin", "admin");
+        service3.login("user", "wrong");
+        metrics.snapshot().forEach((name, stats) -> System.out.println(name + ": " + stats));
+
+        // the format check is declared last but rejects most of this traffic for almost nothing,
+        // so the pipeline moves it in front of the user lookup; the password check stays last
+        UserVerificationHandler userCheck = new UserVerificationHandler(db);
+        UsernameFormatHandler formatCheck = new UsernameFormatHandler(64);
+        PasswordVerificationHandler passwordCheck = new PasswordVerificationHandler(db);
+        AdaptiveHandlerPipeline adaptive = new AdaptiveHandlerPipeline(64, userCheck, formatCheck, passwordCheck)
+                .mustRunBefore(userCheck, passwordCheck);
+        AuthService adaptiveService = new AuthService(adaptive);
+        String junk = "x".repeat(4_000);
+        System.out.println("Declared order: " + Arrays.toString(adaptive.currentOrder()));
+        for (int i = 0; i < 20_000; i++){
+            adaptiveService.authenticate(i % 10 == 0 ? "admin" : junk + i, "admin");
+        }
+        System.out.println("Adaptive order: " + Arrays.toString(adaptive.currentOrder()));
+
+        boolean[] results = service3.loginBatch(List.of(
+                new Credentials("admin", "admin"),
+                new Credentials("user", "wrong"),
+                new Credentials("guest", "guest")));
+        System.out.println("Batch results: " + Arrays.toString(results));
+
+        CachingCredentialStore cache = new CachingCredentialStore(db.getCredentialStore(), 10_000, 5, TimeUnit.MINUTES);
+        Database cachingDb = new Database(cache);
+        AuthService service4 = new AuthService(HandlerPipeline.of(
+                new UserVerificationHandler(cachingDb),
+                new PasswordVerificationHandler(cachingDb)));
+        for (int i = 0; i < 3; i++){
+            service4.login("guest", "guest");
+            service4.login("user", "user");
+        }
+        cachingDb.updatePassword("user", "changed");
+        System.out.println("Old password accepted after change: " + service4.login("user", "user"));
+        System.out.println("Cache hits: " + cache.getHits() + ", misses: " + cache.getMisses());
+
+        AsyncAuthService asyncService = new AsyncAuthService()
+                .then(new UserVerificationHandler(db), Duration.ofMillis(200))
+                .then(new PasswordVerificationHandler(db), Duration.ofMillis(500))
+                .alongside(new RoleVerificationHandler(), Duration.ofMillis(500));
+        System.out.println(asyncService.login("admin", "admin").join());
+        System.out.println(asyncService.login("admin", "12345").join());
+        asyncService.shutdown();
+
+        StripedCredentialStore store = new StripedCredentialStore(16, 100_000);
+        // bulk import of users hashed elsewhere; hashing 100k passwords here would take hours
+        byte[] salt = PasswordHasher.newSalt();
+        byte[] hash = PasswordHasher.hash(salt, "secret");
+        for (int i = 0; i < 100_000; i++){
+            store.putHashed("user" + i, salt, hash);
+        }
+        Path file = Files.createTempFile("credentials", ".txt");
+        store.save(file);
+        Database loaded = new Database(StripedCredentialStore.load(file, 100_000));
+        System.out.println("Loaded users: " + loaded.getCredentialStore().size()
+                + ", user42 valid: " + loaded.isValidPassword("user42", "secret")
+                + ", unknown user valid: " + loaded.isValidPassword("nobody", "secret"));
+        Files.delete(file);
+
+        Path table = Files.createTempFile("credentials", ".tbl");
+        MappedCredentialStore.write(table, store);
+        AuthService coldStarted = new AuthService(HandlerPipeline.of(
+                new UserVerificationHandler(new Database(MappedCredentialStore.open(table)))));
+        System.out.println("Cold start lookup user99999: " + coldStarted.login("user99999", "ignored"));
+        Files.delete(table);
     }
 }
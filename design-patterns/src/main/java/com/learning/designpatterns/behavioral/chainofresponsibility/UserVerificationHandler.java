@@ -1,6 +1,6 @@
 package com.learning.designpatterns.behavioral.chainofresponsibility;
 
-public class UserVerificationHandler extends BaseHandler{
+public class UserVerificationHandler extends BaseHandler implements Reorderable{
     private Database database;
 
     public UserVerificationHandler(Database database){
@@ -8,11 +8,16 @@ public class UserVerificationHandler extends BaseHandler{
     }
 
     @Override
-    public boolean handleRequest(String username, String password) {
+    public boolean check(String username, String password) {
         if(!database.isValidUser(username)){
             // write error to log
             return false;
         }
-        return handleNext(username, password);
+        return true;
+    }
+
+    @Override
+    public void checkBatch(String[] usernames, String[] passwords, boolean[] passed) {
+        database.isValidUser(usernames, passed);
     }
 }
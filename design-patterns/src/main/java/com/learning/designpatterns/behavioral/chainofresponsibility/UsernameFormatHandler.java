@@ -0,0 +1,28 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+/**
+ * Rejects usernames that no account can have: empty, longer than maxLength, or with
+ * characters other than letters, digits, '.', '_' and '-'. It only looks at the string, so it
+ * is much cheaper than a lookup and can run in any order.
+ */
+public class UsernameFormatHandler extends BaseHandler implements Reorderable{
+    private final int maxLength;
+
+    public UsernameFormatHandler(int maxLength){
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    public boolean check(String username, String password) {
+        if (username == null || username.isEmpty() || username.length() > maxLength){
+            return false;
+        }
+        for (int i = 0; i < username.length(); i++){
+            char c = username.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '.' && c != '_' && c != '-'){
+                return false;
+            }
+        }
+        return true;
+    }
+}
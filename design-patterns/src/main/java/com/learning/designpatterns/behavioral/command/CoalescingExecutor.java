@@ -0,0 +1,84 @@
+package com.learning.designpatterns.behavioral.command;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Queues commands and executes them in batches, keeping only what changes the outcome.
+ * On and off commands for the same Television overwrite each other, so a batch runs at most
+ * one command per device, and none at all when the device is already in the final state.
+ * Any other command keeps its place: commands queued before it are flushed first.
+ */
+public class CoalescingExecutor {
+    private final List<Command> pending = new ArrayList<>();
+    private final Map<Television, Command> latestByDevice = new LinkedHashMap<>();
+    private long submitted;
+    private long executed;
+
+    public synchronized void submit(Command command){
+        submitted++;
+        Television television = targetOf(command);
+        if (television == null){
+            pending.addAll(latestByDevice.values());
+            latestByDevice.clear();
+            pending.add(command);
+            return;
+        }
+        // re-insert so the device moves to the position of its latest command
+        latestByDevice.remove(television);
+        latestByDevice.put(television, command);
+    }
+
+    /**
+     * Executes the minimal set of queued commands and returns how many actually ran.
+     */
+    public int flush(){
+        List<Command> batch;
+        synchronized (this){
+            batch = new ArrayList<>(pending);
+            batch.addAll(latestByDevice.values());
+            pending.clear();
+            latestByDevice.clear();
+        }
+        int ran = 0;
+        for (Command command : batch){
+            if (isNoOp(command)){
+                continue;
+            }
+            command.execute();
+            ran++;
+        }
+        synchronized (this){
+            executed += ran;
+        }
+        return ran;
+    }
+
+    public synchronized long getSubmittedCount(){
+        return submitted;
+    }
+
+    public synchronized long getExecutedCount(){
+        return executed;
+    }
+
+    private static Television targetOf(Command command){
+        if (command instanceof OnCommand){
+            return ((OnCommand) command).getTelevision();
+        }
+        if (command instanceof OffCommand){
+            return ((OffCommand) command).getTelevision();
+        }
+        return null;
+    }
+
+    private static boolean isNoOp(Command command){
+        Television television = targetOf(command);
+        if (television == null){
+            return false;
+        }
+        return command instanceof OnCommand ? television.isOn() : !television.isOn();
+    }
+}
@@ -0,0 +1,180 @@
+package com.learning.designpatterns.behavioral.command;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Invoker that runs commands on a dedicated consumer thread instead of the caller's thread.
+ * Commands go through a preallocated ring buffer: producers claim a sequence number, store the
+ * command in its slot and mark the slot published, and the consumer executes every published
+ * command in one batch before it makes the slots available again. Nothing is allocated per
+ * command.
+ *
+ * With ProducerType.SINGLE only one thread may call offer/publish, which saves the CAS
+ * on the claim. A bus has one consumer; shard commands over several buses to use more cores.
+ */
+public class CommandBus implements AutoCloseable {
+    public enum ProducerType { SINGLE, MULTI }
+
+    private final Command[] slots;
+    private final int mask;
+    private final int shift;
+    // round in which each slot was last published, so the consumer can tell old from new
+    private final AtomicIntegerArray published;
+    private final ProducerType producerType;
+    private final WaitStrategy waitStrategy;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final AtomicLong consumed = new AtomicLong(-1);
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Thread consumer;
+    private volatile boolean running = true;
+
+    public CommandBus(int capacity, ProducerType producerType, WaitStrategy waitStrategy){
+        if (Integer.bitCount(capacity) != 1){
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.slots = new Command[capacity];
+        this.mask = capacity - 1;
+        this.shift = Integer.numberOfTrailingZeros(capacity);
+        this.published = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++){
+            published.set(i, -1);
+        }
+        this.producerType = producerType;
+        this.waitStrategy = waitStrategy;
+        this.consumer = new Thread(this::consume, "command-bus");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /**
+     * Enqueues the command without waiting; returns false when the buffer is full or the bus
+     * is closed. A command for which this returns true is executed.
+     */
+    public boolean offer(Command command){
+        if (!running){
+            return false;
+        }
+        long sequence;
+        if (producerType == ProducerType.SINGLE){
+            sequence = claimed.get() + 1;
+            if (sequence - consumed.get() > slots.length){
+                return false;
+            }
+            // a full write, so that either the consumer sees the claim or we see close below
+            claimed.set(sequence);
+        } else {
+            do {
+                long current = claimed.get();
+                sequence = current + 1;
+                if (sequence - consumed.get() > slots.length){
+                    return false;
+                }
+                if (claimed.compareAndSet(current, sequence)){
+                    break;
+                }
+            } while (true);
+        }
+        int index = (int) sequence & mask;
+        slots[index] = command;
+        published.lazySet(index, (int) (sequence >>> shift));
+        if (!running && Thread.currentThread() != consumer){
+            // closed while we claimed: the consumer may or may not have seen the slot
+            awaitConsumer();
+            return consumed.get() >= sequence;
+        }
+        return true;
+    }
+
+    /**
+     * Enqueues the command, waiting with the bus's wait strategy while the buffer is full.
+     */
+    public void publish(Command command){
+        int attempt = 0;
+        while (!offer(command)){
+            if (!running){
+                throw new IllegalStateException("CommandBus is closed");
+            }
+            attempt = waitStrategy.idle(attempt);
+        }
+    }
+
+    public long getExecutedCount(){
+        return executed.sum();
+    }
+
+    public long getFailedCount(){
+        return failed.sum();
+    }
+
+    /**
+     * Stops accepting work and waits, up to a minute, until every accepted command has been
+     * executed. If interrupted it stops waiting and keeps the interrupt status; the consumer
+     * still drains the accepted commands.
+     */
+    @Override
+    public void close(){
+        running = false;
+        try {
+            consumer.join(TimeUnit.MINUTES.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consume(){
+        long next = 0;
+        int attempt = 0;
+        while (true){
+            long available = highestPublished(next);
+            if (available < next){
+                // every slot claimed before close is drained, even if it is not published yet
+                if (!running && claimed.get() < next){
+                    return;
+                }
+                attempt = waitStrategy.idle(attempt);
+                continue;
+            }
+            attempt = 0;
+            for (long sequence = next; sequence <= available; sequence++){
+                int index = (int) sequence & mask;
+                Command command = slots[index];
+                slots[index] = null;
+                try {
+                    command.execute();
+                    executed.increment();
+                } catch (Throwable e) {
+                    // a failing command must not stop the consumer, or producers would wait forever
+                    failed.increment();
+                }
+            }
+            consumed.lazySet(available);
+            next = available + 1;
+        }
+    }
+
+    private void awaitConsumer(){
+        boolean interrupted = false;
+        while (consumer.isAlive()){
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long highestPublished(long from){
+        long sequence = from;
+        while (published.get((int) sequence & mask) == (int) (sequence >>> shift)){
+            sequence++;
+        }
+        return sequence - 1;
+    }
+}
@@ -0,0 +1,62 @@
+package com.learning.designpatterns.behavioral.command;
+
+import java.util.function.IntFunction;
+
+/**
+ * Encodes device commands as an opcode plus the target device id, so they can be stored
+ * without keeping the command objects around.
+ */
+final class CommandCodec {
+    static final byte ON = 1;
+    static final byte OFF = 2;
+
+    private CommandCodec(){
+    }
+
+    static byte opcode(Command command){
+        if (command instanceof OnCommand){
+            return ON;
+        }
+        if (command instanceof OffCommand){
+            return OFF;
+        }
+        throw new IllegalArgumentException("Cannot encode " + command.getClass().getSimpleName());
+    }
+
+    static int deviceId(Command command){
+        if (command instanceof OnCommand){
+            return ((OnCommand) command).getTelevision().getId();
+        }
+        if (command instanceof OffCommand){
+            return ((OffCommand) command).getTelevision().getId();
+        }
+        throw new IllegalArgumentException("Cannot encode " + command.getClass().getSimpleName());
+    }
+
+    static Command decode(byte opcode, int deviceId, IntFunction<Television> devices){
+        switch (opcode){
+            case ON:
+                return new OnCommand(devices.apply(deviceId));
+            case OFF:
+                return new OffCommand(devices.apply(deviceId));
+            default:
+                throw new IllegalArgumentException("Unknown opcode " + opcode);
+        }
+    }
+
+    /**
+     * Applies an encoded command directly, without creating a command object.
+     */
+    static void apply(byte opcode, Television television){
+        switch (opcode){
+            case ON:
+                television.on();
+                break;
+            case OFF:
+                television.off();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown opcode " + opcode);
+        }
+    }
+}
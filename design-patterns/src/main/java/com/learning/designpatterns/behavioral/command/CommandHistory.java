@@ -0,0 +1,182 @@
+package com.learning.designpatterns.behavioral.command;
+
+import java.util.function.IntFunction;
+
+/**
+ * Bounded undo/redo history for device commands. Instead of keeping command objects, every
+ * entry is one long in a ring buffer: the device id, the opcode and whether the device was on
+ * before the command ran. When the buffer is full the oldest entry is forgotten.
+ *
+ * The history does not touch the devices itself: undo and redo return the command that
+ * restores the previous state or re-applies the opcode, and the caller runs it like any other
+ * command, so it is journaled and queued in order. For the same reason the previous state is
+ * not read from the device, which may still have commands queued, but from the last command
+ * recorded for it. Those states are kept in a primitive open-addressing table that only holds
+ * devices with entries in the ring, so memory stays bounded by the capacity no matter how many
+ * devices are used; once a device's last entry leaves the ring its state is read from the
+ * device again.
+ */
+public class CommandHistory {
+    private static final long WAS_ON = 1L << 8;
+
+    private final long[] entries;
+    private final IntFunction<Television> devices;
+    // linear-probing table of the devices with entries in the ring: the state each will be in
+    // once the commands recorded so far have run, and how many entries refer to it (0 = free)
+    private final int[] deviceIds;
+    private final int[] references;
+    private final boolean[] expectedOn;
+    private int oldest;
+    // entries [oldest, oldest + undoable) can be undone, the next redoable ones can be redone
+    private int undoable;
+    private int redoable;
+
+    public CommandHistory(int capacity, IntFunction<Television> devices){
+        if (capacity <= 0){
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.entries = new long[capacity];
+        this.devices = devices;
+        // at most capacity + 1 devices are tracked at once, so the table stays at most half full
+        int tableSize = Integer.highestOneBit(2 * capacity + 1) << 1;
+        this.deviceIds = new int[tableSize];
+        this.references = new int[tableSize];
+        this.expectedOn = new boolean[tableSize];
+    }
+
+    /**
+     * Records a command that has been handed on to run. Anything that could have been redone
+     * is dropped, which costs one step per dropped entry.
+     */
+    public void record(Command command){
+        int deviceId = CommandCodec.deviceId(command);
+        byte opcode = CommandCodec.opcode(command);
+        for (int i = 0; i < redoable; i++){
+            release(deviceId(entries[(oldest + undoable + i) % entries.length]));
+        }
+        redoable = 0;
+        int slot = acquire(deviceId);
+        boolean wasOn = expectedOn[slot];
+        expectedOn[slot] = opcode == CommandCodec.ON;
+        long entry = ((long) deviceId << 32) | (wasOn ? WAS_ON : 0) | (opcode & 0xFF);
+        if (undoable == entries.length){
+            release(deviceId(entries[oldest]));
+            oldest = (oldest + 1) % entries.length;
+            undoable--;
+        }
+        entries[(oldest + undoable) % entries.length] = entry;
+        undoable++;
+    }
+
+    /**
+     * Steps back one entry and returns the command that restores the state before it, or null
+     * when there is nothing to undo.
+     */
+    public Command undo(){
+        if (undoable == 0){
+            return null;
+        }
+        undoable--;
+        redoable++;
+        long entry = entries[(oldest + undoable) % entries.length];
+        boolean wasOn = (entry & WAS_ON) != 0;
+        expectedOn[find(deviceId(entry))] = wasOn;
+        Television television = devices.apply(deviceId(entry));
+        return wasOn ? new OnCommand(television) : new OffCommand(television);
+    }
+
+    /**
+     * Steps forward one entry and returns the command that re-applies it, or null when there
+     * is nothing to redo.
+     */
+    public Command redo(){
+        if (redoable == 0){
+            return null;
+        }
+        long entry = entries[(oldest + undoable) % entries.length];
+        undoable++;
+        redoable--;
+        byte opcode = (byte) entry;
+        expectedOn[find(deviceId(entry))] = opcode == CommandCodec.ON;
+        return CommandCodec.decode(opcode, deviceId(entry), devices);
+    }
+
+    public int undoableCount(){
+        return undoable;
+    }
+
+    public int redoableCount(){
+        return redoable;
+    }
+
+    /**
+     * Number of devices whose expected state is being tracked.
+     */
+    int trackedDevices(){
+        int tracked = 0;
+        for (int count : references){
+            if (count != 0){
+                tracked++;
+            }
+        }
+        return tracked;
+    }
+
+    /**
+     * Slot of the device, or of the free slot where it would go.
+     */
+    private int find(int deviceId){
+        int mask = deviceIds.length - 1;
+        int slot = hash(deviceId) & mask;
+        while (references[slot] != 0 && deviceIds[slot] != deviceId){
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Adds a reference from a new ring entry; a device not tracked yet starts from its
+     * current state.
+     */
+    private int acquire(int deviceId){
+        int slot = find(deviceId);
+        if (references[slot] == 0){
+            deviceIds[slot] = deviceId;
+            expectedOn[slot] = devices.apply(deviceId).isOn();
+        }
+        references[slot]++;
+        return slot;
+    }
+
+    /**
+     * Drops a reference from an entry leaving the ring, and the device with its last one. The
+     * entries after it in the probe sequence are shifted back, so no tombstones are needed.
+     */
+    private void release(int deviceId){
+        int mask = deviceIds.length - 1;
+        int hole = find(deviceId);
+        if (--references[hole] > 0){
+            return;
+        }
+        for (int i = (hole + 1) & mask; references[i] != 0; i = (i + 1) & mask){
+            int home = hash(deviceIds[i]) & mask;
+            // i may move back only if the hole lies between its home slot and i
+            if (((i - home) & mask) >= ((i - hole) & mask)){
+                deviceIds[hole] = deviceIds[i];
+                references[hole] = references[i];
+                expectedOn[hole] = expectedOn[i];
+                references[i] = 0;
+                hole = i;
+            }
+        }
+    }
+
+    private static int hash(int deviceId){
+        int h = deviceId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int deviceId(long entry){
+        return (int) (entry >>> 32);
+    }
+}
@@ -0,0 +1,289 @@
+package com.learning.designpatterns.behavioral.command;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead log of executed commands. Each command is stored as an 8 byte record
+ * [int device id][byte opcode][3 bytes of the record's CRC-32C] in a preallocated,
+ * memory-mapped segment file; a zero opcode marks the end of the written part. Records are
+ * aligned to 8 bytes, so none straddles a page, and replay stops at the first record that fails
+ * its checksum, e.g. one torn by a power loss. When a segment is full the journal rolls over to
+ * a new one, named after the sequence number of its first record, and segments that are no
+ * longer needed for replay can be deleted with retire.
+ *
+ * Every segment starts with a header [int magic][int segment size][long first sequence
+ * number], so a journal reopened with a different segment size still reads its existing
+ * segments with the size they were written with.
+ *
+ * Appending only writes to memory. appendDurably also forces the segment to disk, but
+ * threads that arrive while another thread is forcing wait for it and are then usually
+ * covered by that same force, so concurrent callers share one fsync (group commit).
+ */
+public class CommandJournal implements AutoCloseable {
+    private static final int MAGIC = 0x434d444a;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 8;
+    private static final String PREFIX = "commands-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Object syncLock = new Object();
+    // only used with the lock held
+    private final CRC32C crc = new CRC32C();
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    // sequence number of the first record in the current segment
+    private long segmentBase;
+    private long appended;
+    private volatile long durable;
+
+    private CommandJournal(Path directory, int segmentSize){
+        if (segmentSize < HEADER_SIZE + RECORD_SIZE){
+            throw new IllegalArgumentException("segmentSize must hold a header and one record: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize - (segmentSize - HEADER_SIZE) % RECORD_SIZE;
+    }
+
+    /**
+     * Opens the journal in directory, continuing after the last valid record of the newest
+     * segment. Anything after that record, e.g. a torn write, is cleared.
+     */
+    public static CommandJournal open(Path directory, int segmentSize) throws IOException {
+        Files.createDirectories(directory);
+        CommandJournal journal = new CommandJournal(directory, segmentSize);
+        List<Path> segments = segments(directory);
+        if (segments.isEmpty()){
+            journal.roll(1);
+            return journal;
+        }
+        Path last = segments.get(segments.size() - 1);
+        journal.openLast(last, baseOf(last));
+        MappedByteBuffer segment = journal.segment;
+        segment.position(HEADER_SIZE);
+        while (segment.remaining() >= RECORD_SIZE){
+            int position = segment.position();
+            int record = segment.getInt(position + 4);
+            if (record == 0){
+                break;
+            }
+            if (!valid(journal.crc, segment.getInt(position), record)){
+                for (int i = position; i < segment.limit(); i++){
+                    segment.put(i, (byte) 0);
+                }
+                segment.force();
+                break;
+            }
+            segment.position(position + RECORD_SIZE);
+        }
+        journal.appended = journal.segmentBase - 1 + (segment.position() - HEADER_SIZE) / RECORD_SIZE;
+        journal.durable = journal.appended;
+        return journal;
+    }
+
+    /**
+     * Re-executes every journaled command in order, e.g. to restore device state after a
+     * crash, up to the first record that fails its checksum. Returns the number of commands
+     * replayed.
+     */
+    public static long replay(Path directory, IntFunction<Television> devices) throws IOException {
+        CRC32C crc = new CRC32C();
+        long count = 0;
+        for (Path file : segments(directory)){
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                checkHeader(buffer, file);
+                buffer.position(HEADER_SIZE);
+                while (buffer.remaining() >= RECORD_SIZE){
+                    int deviceId = buffer.getInt();
+                    int record = buffer.getInt();
+                    if (record == 0){
+                        break;
+                    }
+                    if (!valid(crc, deviceId, record)){
+                        return count;
+                    }
+                    CommandCodec.apply((byte) (record >>> 24), devices.apply(deviceId));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the command to the log without forcing it to disk; returns its sequence number.
+     */
+    public synchronized long append(Command command) throws IOException {
+        byte opcode = CommandCodec.opcode(command);
+        int deviceId = CommandCodec.deviceId(command);
+        if (segment.remaining() < RECORD_SIZE){
+            segment.force();
+            roll(appended + 1);
+        }
+        int position = segment.position();
+        segment.putInt(position, deviceId);
+        segment.putInt(position + 4, (opcode & 0xFF) << 24 | checksum(crc, deviceId, opcode));
+        segment.position(position + RECORD_SIZE);
+        return ++appended;
+    }
+
+    /**
+     * Appends the command and waits until it is on disk. Costs an fsync unless a concurrent
+     * caller's sync covers it; to journal many commands, append them and sync once.
+     */
+    public long appendDurably(Command command) throws IOException {
+        long sequence = append(command);
+        sync(sequence);
+        return sequence;
+    }
+
+    /**
+     * Forces everything appended so far to disk.
+     */
+    public void sync() throws IOException {
+        long target;
+        synchronized (this){
+            target = appended;
+        }
+        sync(target);
+    }
+
+    private void sync(long sequence) throws IOException {
+        synchronized (syncLock){
+            if (durable >= sequence){
+                return;
+            }
+            MappedByteBuffer current;
+            long target;
+            synchronized (this){
+                current = segment;
+                target = appended;
+            }
+            current.force();
+            durable = target;
+        }
+    }
+
+    /**
+     * Deletes every segment that only holds commands up to the given sequence number, e.g.
+     * once the device state they lead to has been saved elsewhere. The current segment is
+     * always kept. Returns the number of segments deleted.
+     */
+    public int retire(long sequence) throws IOException {
+        long current;
+        synchronized (this){
+            current = segmentBase;
+        }
+        List<Path> segments = segments(directory);
+        int retired = 0;
+        for (int i = 0; i + 1 < segments.size(); i++){
+            long nextBase = baseOf(segments.get(i + 1));
+            if (nextBase > current || nextBase - 1 > sequence){
+                break;
+            }
+            Files.delete(segments.get(i));
+            retired++;
+        }
+        return retired;
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        synchronized (this){
+            channel.close();
+        }
+    }
+
+    private void roll(long base) throws IOException {
+        if (channel != null){
+            channel.close();
+        }
+        map(directory.resolve(String.format("%s%016d%s", PREFIX, base, SUFFIX)), base, segmentSize);
+        segment.putInt(0, MAGIC).putInt(4, segmentSize).putLong(8, base);
+        segment.position(HEADER_SIZE);
+    }
+
+    /**
+     * Maps an existing segment with the size its header records. A segment whose header never
+     * reached the disk is started again.
+     */
+    private void openLast(Path file, long base) throws IOException {
+        long size = Files.size(file);
+        if (size < HEADER_SIZE){
+            Files.delete(file);
+            roll(base);
+            return;
+        }
+        map(file, base, (int) Math.min(size, Integer.MAX_VALUE));
+        if (segment.getInt(0) == 0 && segment.getInt(4) == 0){
+            channel.close();
+            Files.delete(file);
+            roll(base);
+            return;
+        }
+        checkHeader(segment, file);
+    }
+
+    private void map(Path file, long base, int size) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        segmentBase = base;
+    }
+
+    private static void checkHeader(MappedByteBuffer buffer, Path file) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != buffer.capacity()
+                || buffer.getLong(8) != baseOf(file)){
+            throw new IOException("Corrupt journal segment header in " + file);
+        }
+    }
+
+    private static boolean valid(CRC32C crc, int deviceId, int record){
+        byte opcode = (byte) (record >>> 24);
+        return deviceId >= 0 && (opcode == CommandCodec.ON || opcode == CommandCodec.OFF)
+                && (record & 0xFFFFFF) == checksum(crc, deviceId, opcode);
+    }
+
+    // low 24 bits of the CRC-32C of the device id and opcode
+    private static int checksum(CRC32C crc, int deviceId, byte opcode){
+        crc.reset();
+        crc.update(deviceId >>> 24);
+        crc.update(deviceId >>> 16);
+        crc.update(deviceId >>> 8);
+        crc.update(deviceId);
+        crc.update(opcode);
+        return (int) crc.getValue() & 0xFFFFFF;
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)){
+            return segments;
+        }
+        try (Stream<Path> files = Files.list(directory)){
+            files.filter(f -> f.getFileName().toString().startsWith(PREFIX)
+                            && f.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .forEach(segments::add);
+        }
+        return segments;
+    }
+
+    private static long baseOf(Path segment){
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,261 @@
+package com.learning.designpatterns.behavioral.command;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs commands after a delay or periodically, using a hierarchical timing wheel instead of
+ * a priority queue. Time is split into ticks; level 0 has one slot per tick for the next 64
+ * ticks, and each higher level has slots 64 times as wide. A timer goes into the coarsest
+ * slot that fits its deadline and moves down a level each time the wheel below wraps around,
+ * so scheduling and cancelling are O(1) no matter how many timers are pending.
+ *
+ * Due commands are not executed by the scheduler itself; they are handed to a sink in
+ * batches, e.g. a RemoteControl or CommandBus::publish.
+ */
+public class CommandScheduler implements AutoCloseable {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELAY_TICKS = 1L << (SLOT_BITS * LEVELS);
+
+    private final Timer[][] wheels = new Timer[LEVELS][SLOTS];
+    private final long tickNanos;
+    private final long startNanos;
+    private final Consumer<List<Command>> sink;
+    private long currentTick;
+    private int pending;
+    private Thread ticker;
+    private volatile boolean running;
+
+    public CommandScheduler(long tick, TimeUnit unit, Consumer<List<Command>> sink){
+        this.tickNanos = unit.toNanos(tick);
+        if (tickNanos <= 0){
+            throw new IllegalArgumentException("tick must be positive");
+        }
+        this.sink = sink;
+        this.startNanos = System.nanoTime();
+    }
+
+    public Timer schedule(Command command, long delay, TimeUnit unit){
+        return add(command, toTicks(delay, unit), 0);
+    }
+
+    public Timer scheduleAtFixedRate(Command command, long initialDelay, long period, TimeUnit unit){
+        long periodTicks = toTicks(period, unit);
+        if (periodTicks <= 0){
+            throw new IllegalArgumentException("period must be at least one tick");
+        }
+        return add(command, toTicks(initialDelay, unit), periodTicks);
+    }
+
+    /**
+     * Advances the wheel to the current time and hands every due command to the sink.
+     * Called by the ticker thread started with start, or directly by the owner.
+     */
+    public void advance(){
+        advanceTo((System.nanoTime() - startNanos) / tickNanos);
+    }
+
+    /**
+     * Advances the wheel to the given tick, regardless of the clock.
+     */
+    void advanceTo(long targetTick){
+        List<Command> due = new ArrayList<>();
+        synchronized (this){
+            while (currentTick < targetTick){
+                currentTick++;
+                cascade();
+                expire(due);
+            }
+        }
+        if (!due.isEmpty()){
+            sink.accept(due);
+        }
+    }
+
+    public synchronized int pendingCount(){
+        return pending;
+    }
+
+    public synchronized void start(){
+        if (ticker != null){
+            return;
+        }
+        running = true;
+        ticker = new Thread(() -> {
+            while (running){
+                advance();
+                long sleep = tickNanos - (System.nanoTime() - startNanos) % tickNanos;
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "command-scheduler");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /**
+     * Stops the ticker thread, waiting up to a minute for a batch it is handing to the sink.
+     * If interrupted it stops waiting and keeps the interrupt status.
+     */
+    @Override
+    public void close(){
+        Thread thread;
+        synchronized (this){
+            running = false;
+            thread = ticker;
+        }
+        if (thread != null){
+            thread.interrupt();
+            try {
+                thread.join(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized Timer add(Command command, long delayTicks, long periodTicks){
+        long now = (System.nanoTime() - startNanos) / tickNanos;
+        Timer timer = new Timer(this, command, Math.max(now, currentTick) + Math.max(1, delayTicks), periodTicks);
+        insert(timer);
+        pending++;
+        return timer;
+    }
+
+    /**
+     * A timer due at the current tick, which only cascade produces for deadlines on a slot
+     * boundary, goes into level 0's current slot; expire runs that slot right after.
+     */
+    private void insert(Timer timer){
+        long delta = Math.max(0, timer.deadline - currentTick);
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))){
+            level++;
+        }
+        long slotTick;
+        if (delta == 0){
+            slotTick = currentTick;
+        } else if (delta >= MAX_DELAY_TICKS){
+            slotTick = currentTick + MAX_DELAY_TICKS - 1;
+        } else {
+            slotTick = timer.deadline;
+        }
+        int slot = (int) (slotTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+        timer.level = level;
+        timer.slot = slot;
+        timer.prev = null;
+        timer.next = wheels[level][slot];
+        if (timer.next != null){
+            timer.next.prev = timer;
+        }
+        wheels[level][slot] = timer;
+    }
+
+    private void unlink(Timer timer){
+        if (timer.prev != null){
+            timer.prev.next = timer.next;
+        } else {
+            wheels[timer.level][timer.slot] = timer.next;
+        }
+        if (timer.next != null){
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = null;
+        timer.next = null;
+        timer.level = -1;
+    }
+
+    /**
+     * Moves the timers of every higher-level slot that starts at this tick one level down,
+     * coarsest level first.
+     */
+    private void cascade(){
+        for (int level = LEVELS - 1; level > 0; level--){
+            long mask = (1L << (SLOT_BITS * level)) - 1;
+            if ((currentTick & mask) != 0){
+                continue;
+            }
+            int slot = (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK;
+            Timer timer = wheels[level][slot];
+            wheels[level][slot] = null;
+            while (timer != null){
+                Timer next = timer.next;
+                timer.prev = null;
+                timer.next = null;
+                insert(timer);
+                timer = next;
+            }
+        }
+    }
+
+    private void expire(List<Command> due){
+        int slot = (int) currentTick & SLOT_MASK;
+        Timer timer = wheels[0][slot];
+        while (timer != null){
+            Timer next = timer.next;
+            if (timer.deadline <= currentTick){
+                unlink(timer);
+                due.add(timer.command);
+                if (timer.periodTicks > 0){
+                    timer.deadline += timer.periodTicks;
+                    insert(timer);
+                } else {
+                    timer.done = true;
+                    pending--;
+                }
+            }
+            timer = next;
+        }
+    }
+
+    private long toTicks(long duration, TimeUnit unit){
+        // toNanos saturates at Long.MAX_VALUE, so round up without adding to it
+        long nanos = unit.toNanos(duration);
+        return nanos / tickNanos + (nanos % tickNanos == 0 ? 0 : 1);
+    }
+
+    /**
+     * Handle for a scheduled command.
+     */
+    public static final class Timer {
+        private final CommandScheduler scheduler;
+        private final Command command;
+        private final long periodTicks;
+        private long deadline;
+        private int level;
+        private int slot;
+        private Timer prev;
+        private Timer next;
+        private boolean done;
+
+        private Timer(CommandScheduler scheduler, Command command, long deadline, long periodTicks){
+            this.scheduler = scheduler;
+            this.command = command;
+            this.deadline = deadline;
+            this.periodTicks = periodTicks;
+        }
+
+        /**
+         * Returns false when the command already ran (one-shot) or was cancelled before.
+         */
+        public boolean cancel(){
+            synchronized (scheduler){
+                if (done){
+                    return false;
+                }
+                scheduler.unlink(this);
+                scheduler.pending--;
+                done = true;
+                return true;
+            }
+        }
+    }
+}
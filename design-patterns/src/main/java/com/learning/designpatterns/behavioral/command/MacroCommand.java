@@ -0,0 +1,221 @@
+package com.learning.designpatterns.behavioral.command;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Composite command that sends the same command to a whole fleet of televisions in parallel.
+ * At most maxConcurrency devices are driven at once: a new device is started whenever one
+ * finishes, so no thread sits waiting for a free slot.
+ *
+ * The per-device timeout counts from when the device's command starts running. A device that
+ * does not answer in time is reported as timed out and its thread is interrupted; its slot is
+ * handed to the next device once the command has actually returned, so the concurrency bound
+ * holds even for commands that are slow to give up.
+ */
+public class MacroCommand implements Command {
+    private final List<Television> devices;
+    private final Function<Television, Command> commandFactory;
+    private final Executor executor;
+    private final int maxConcurrency;
+    private final long timeoutNanos;
+    private final Executor timer;
+    private volatile Result lastResult;
+
+    public MacroCommand(List<Television> devices, Function<Television, Command> commandFactory,
+                        Executor executor, int maxConcurrency, Duration perDeviceTimeout){
+        if (maxConcurrency <= 0){
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        this.devices = new ArrayList<>(devices);
+        this.commandFactory = commandFactory;
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+        this.timeoutNanos = perDeviceTimeout.toNanos();
+        this.timer = CompletableFuture.delayedExecutor(timeoutNanos, TimeUnit.NANOSECONDS, Runnable::run);
+    }
+
+    /**
+     * Runs the broadcast and waits for every device; the outcome is available from getLastResult.
+     */
+    @Override
+    public void execute() {
+        lastResult = executeAsync().join();
+    }
+
+    public Result getLastResult(){
+        return lastResult;
+    }
+
+    public CompletableFuture<Result> executeAsync(){
+        Broadcast broadcast = new Broadcast();
+        if (devices.isEmpty()){
+            broadcast.done.complete(broadcast.result());
+        }
+        broadcast.startMore();
+        return broadcast.done;
+    }
+
+    private final class Broadcast {
+        // number of startMore calls in progress; only the first one starts devices
+        private final AtomicInteger pumping = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger decided = new AtomicInteger();
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger timedOut = new AtomicInteger();
+        private final Map<Integer, Throwable> failures = new ConcurrentHashMap<>();
+        private final CompletableFuture<Result> done = new CompletableFuture<>();
+        // only touched by the thread that won pumping
+        private int nextDevice;
+
+        /**
+         * Starts devices while slots are free. A device that finishes on the calling thread,
+         * e.g. with a direct executor, calls back in here; instead of recursing, that call
+         * just makes the running loop go round once more.
+         */
+        private void startMore(){
+            if (pumping.getAndIncrement() != 0){
+                return;
+            }
+            do {
+                while (nextDevice < devices.size() && active.get() < maxConcurrency){
+                    active.incrementAndGet();
+                    DeviceRun run = new DeviceRun(this, nextDevice++);
+                    try {
+                        executor.execute(run);
+                    } catch (RejectedExecutionException e) {
+                        run.decide(e);
+                        active.decrementAndGet();
+                    }
+                }
+            } while (pumping.decrementAndGet() != 0);
+        }
+
+        private void finished(){
+            active.decrementAndGet();
+            startMore();
+        }
+
+        private void record(int index, Throwable error){
+            if (error == null){
+                succeeded.incrementAndGet();
+            } else {
+                if (error instanceof TimeoutException){
+                    timedOut.incrementAndGet();
+                }
+                failures.put(index, error);
+            }
+            if (decided.incrementAndGet() == devices.size()){
+                done.complete(result());
+            }
+        }
+
+        private Result result(){
+            return new Result(devices.size(), succeeded.get(), timedOut.get(), failures);
+        }
+    }
+
+    private final class DeviceRun implements Runnable {
+        private final Broadcast broadcast;
+        private final int index;
+        private final AtomicBoolean decided = new AtomicBoolean();
+        // guarded by this; the thread running the command, so a timeout can interrupt it
+        private Thread runner;
+
+        private DeviceRun(Broadcast broadcast, int index){
+            this.broadcast = broadcast;
+            this.index = index;
+        }
+
+        @Override
+        public void run(){
+            synchronized (this){
+                runner = Thread.currentThread();
+            }
+            timer.execute(this::timeOut);
+            Throwable error = null;
+            try {
+                commandFactory.apply(devices.get(index)).execute();
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                synchronized (this){
+                    runner = null;
+                }
+                // a timeout may have interrupted us after the command returned
+                Thread.interrupted();
+            }
+            decide(error);
+            broadcast.finished();
+        }
+
+        private void timeOut(){
+            if (decide(new TimeoutException("Device at position " + index + " did not answer in time"))){
+                synchronized (this){
+                    if (runner != null){
+                        runner.interrupt();
+                    }
+                }
+            }
+        }
+
+        private boolean decide(Throwable error){
+            if (!decided.compareAndSet(false, true)){
+                return false;
+            }
+            broadcast.record(index, error);
+            return true;
+        }
+    }
+
+    public static final class Result {
+        private final int devices;
+        private final int succeeded;
+        private final int timedOut;
+        private final Map<Integer, Throwable> failures;
+
+        private Result(int devices, int succeeded, int timedOut, Map<Integer, Throwable> failures){
+            this.devices = devices;
+            this.succeeded = succeeded;
+            this.timedOut = timedOut;
+            this.failures = Collections.unmodifiableMap(failures);
+        }
+
+        public int getDevices(){
+            return devices;
+        }
+
+        public int getSucceeded(){
+            return succeeded;
+        }
+
+        public int getTimedOut(){
+            return timedOut;
+        }
+
+        /**
+         * Failed and timed out devices by their position in the macro's device list.
+         */
+        public Map<Integer, Throwable> getFailures(){
+            return failures;
+        }
+
+        @Override
+        public String toString(){
+            return "devices=" + devices + ", succeeded=" + succeeded + ", failed=" + failures.size()
+                    + " (timed out=" + timedOut + ")";
+        }
+    }
+}
@@ -8,6 +8,10 @@ public class OffCommand implements Command {
         this.television = television;
     }
 
+    Television getTelevision(){
+        return television;
+    }
+
     @Override
     public void execute() {
         television.off();
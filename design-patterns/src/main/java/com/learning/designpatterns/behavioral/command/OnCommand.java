@@ -8,6 +8,10 @@ public class OnCommand implements Command {
         this.television = television;
     }
 
+    Television getTelevision(){
+        return television;
+    }
+
     @Override
     public void execute() {
         television.on();
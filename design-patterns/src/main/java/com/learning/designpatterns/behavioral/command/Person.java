@@ -1,13 +1,85 @@
 package com.learning.designpatterns.behavioral.command;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 public class Person {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException, IOException {
         Television television = new Television();
         Command onCommand = new OnCommand(television);
         RemoteControl remoteControl = new RemoteControl();
         remoteControl.setCommand(onCommand);
         remoteControl.pressButton();
+
+        try (CommandBus bus = new CommandBus(1024, CommandBus.ProducerType.MULTI, WaitStrategy.YIELDING)) {
+            RemoteControl busRemote = new RemoteControl(bus);
+            busRemote.setCommand(new OffCommand(television));
+            busRemote.pressButton();
+        }
+
+        Path journalDir = Files.createTempDirectory("command-journal");
+        Television[] devices = {new Television(0), new Television(1)};
+        try (CommandJournal journal = CommandJournal.open(journalDir, 4096)) {
+            RemoteControl journaled = new RemoteControl();
+            journaled.setJournal(journal);
+            journaled.setCommand(new OnCommand(devices[1]));
+            journaled.pressButton();
+            journaled.syncJournal();
+        }
+        Television[] recovered = {new Television(0), new Television(1)};
+        long replayed = CommandJournal.replay(journalDir, id -> recovered[id]);
+        System.out.println("Replayed " + replayed + " command(s), TV 1 on: " + recovered[1].isOn());
+
+        RemoteControl undoable = new RemoteControl();
+        undoable.setHistory(new CommandHistory(1000, id -> devices[id]));
+        undoable.setCommand(new OnCommand(devices[0]));
+        undoable.pressButton();
+        undoable.undo();
+        System.out.println("TV 0 on after undo: " + devices[0].isOn());
+        undoable.redo();
+        System.out.println("TV 0 on after redo: " + devices[0].isOn());
+
+        CoalescingExecutor coalescing = new CoalescingExecutor();
+        for (int i = 0; i < 10; i++) {
+            coalescing.submit(new OffCommand(devices[0]));
+            coalescing.submit(new OnCommand(devices[1]));
+            coalescing.submit(new OffCommand(devices[1]));
+        }
+        int ran = coalescing.flush();
+        System.out.println("Coalesced " + coalescing.getSubmittedCount() + " commands into " + ran);
+
+        RemoteControl scheduledRemote = new RemoteControl();
+        try (CommandScheduler scheduler = new CommandScheduler(1, TimeUnit.MILLISECONDS, batch -> batch.forEach(command -> {
+            scheduledRemote.setCommand(command);
+            scheduledRemote.pressButton();
+        }))) {
+            scheduler.start();
+            scheduler.schedule(new OffCommand(devices[1]), 20, TimeUnit.MILLISECONDS);
+            CommandScheduler.Timer cancelled = scheduler.schedule(new OnCommand(devices[1]), 30, TimeUnit.MILLISECONDS);
+            cancelled.cancel();
+            Thread.sleep(100);
+        }
+        System.out.println("TV 1 on after scheduled off: " + devices[1].isOn());
+
+        List<Television> fleet = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            fleet.add(new Television(100 + i));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        MacroCommand allOn = new MacroCommand(fleet, OnCommand::new, pool, 2, Duration.ofSeconds(1));
+        RemoteControl fleetRemote = new RemoteControl();
+        fleetRemote.setCommand(allOn);
+        fleetRemote.pressButton();
+        System.out.println("Broadcast: " + allOn.getLastResult());
+        pool.shutdown();
     }
     
 }
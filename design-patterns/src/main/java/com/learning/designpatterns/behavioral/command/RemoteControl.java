@@ -1,8 +1,25 @@
 package com.learning.designpatterns.behavioral.command;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
 public class RemoteControl {
 
     private Command command;
+    private final CommandBus commandBus;
+    private CommandJournal journal;
+    private CommandHistory history;
+
+    public RemoteControl(){
+        this(null);
+    }
+
+    /**
+     * A remote control that hands commands to the bus instead of executing them itself.
+     */
+    public RemoteControl(CommandBus commandBus){
+        this.commandBus = commandBus;
+    }
 
     public Command geCommand(){
         return command;
@@ -12,7 +29,85 @@ public class RemoteControl {
         this.command = command;
     }
 
+    /**
+     * Journals every command before it runs, so device state can be replayed after a crash.
+     * Presses only write to the mapped journal, which survives the process crashing; call
+     * syncJournal after a batch of presses to make them survive a power loss as well.
+     */
+    public void setJournal(CommandJournal journal){
+        this.journal = journal;
+    }
+
+    public void setHistory(CommandHistory history){
+        this.history = history;
+    }
+
     public void pressButton(){
+        journal(command);
+        if (history != null){
+            history.record(command);
+        }
+        dispatch(command);
+    }
+
+    /**
+     * Forces every journaled press to disk with one fsync.
+     */
+    public void syncJournal() throws IOException {
+        if (journal != null){
+            journal.sync();
+        }
+    }
+
+    /**
+     * Undoes the last recorded press. The compensating command is journaled and dispatched
+     * like a press, so replaying the journal ends in the same state.
+     */
+    public boolean undo(){
+        Command inverse = history == null ? null : history.undo();
+        if (inverse == null){
+            return false;
+        }
+        try {
+            journal(inverse);
+        } catch (UncheckedIOException e) {
+            history.redo();
+            throw e;
+        }
+        dispatch(inverse);
+        return true;
+    }
+
+    public boolean redo(){
+        Command again = history == null ? null : history.redo();
+        if (again == null){
+            return false;
+        }
+        try {
+            journal(again);
+        } catch (UncheckedIOException e) {
+            history.undo();
+            throw e;
+        }
+        dispatch(again);
+        return true;
+    }
+
+    private void journal(Command command){
+        if (journal != null){
+            try {
+                journal.append(command);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void dispatch(Command command){
+        if (commandBus != null){
+            commandBus.publish(command);
+            return;
+        }
         command.execute();
     }
     
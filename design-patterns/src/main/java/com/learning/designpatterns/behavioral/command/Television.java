@@ -2,11 +2,32 @@ package com.learning.designpatterns.behavioral.command;
 
 public class Television {
 
+    private final int id;
+    private boolean on;
+
+    public Television(){
+        this(0);
+    }
+
+    public Television(int id){
+        this.id = id;
+    }
+
+    public int getId(){
+        return id;
+    }
+
+    public boolean isOn(){
+        return on;
+    }
+
     public void on(){
+        on = true;
         System.out.println("Switching on TV");
     }
     
     public void off(){
+        on = false;
         System.out.println("Switching off TV");
     }
 }
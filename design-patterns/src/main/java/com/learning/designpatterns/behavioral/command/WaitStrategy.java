@@ -0,0 +1,45 @@
+package com.learning.designpatterns.behavioral.command;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a CommandBus thread waits for the other side of the ring buffer: the consumer when the
+ * buffer is empty, a producer when it is full. Trades CPU for latency, from BUSY_SPIN (lowest
+ * latency, burns a core) to PARKING (cheapest, microseconds of wake-up delay).
+ */
+public enum WaitStrategy {
+    BUSY_SPIN {
+        @Override
+        int idle(int attempt) {
+            Thread.onSpinWait();
+            return attempt + 1;
+        }
+    },
+    YIELDING {
+        @Override
+        int idle(int attempt) {
+            if (attempt < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+            return attempt + 1;
+        }
+    },
+    PARKING {
+        @Override
+        int idle(int attempt) {
+            if (attempt < 100) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(50_000);
+            }
+            return attempt + 1;
+        }
+    };
+
+    /**
+     * Called once per unsuccessful attempt; returns the attempt counter for the next call.
+     */
+    abstract int idle(int attempt);
+}
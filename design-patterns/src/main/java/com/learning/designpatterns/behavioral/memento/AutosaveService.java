@@ -0,0 +1,156 @@
+package com.learning.designpatterns.behavioral.memento;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.learning.designpatterns.behavioral.memento.TextArea.Memento;
+
+/**
+ * Persists editor snapshots on a single background writer thread. submit only replaces the
+ * pending snapshot and wakes the writer, so the editing thread never waits for I/O; snapshots
+ * submitted while a write is in progress are coalesced and only the newest one is written.
+ * Each save goes to a temporary file that is forced and then atomically renamed over the
+ * target, and the directory is forced after the rename, so a crash leaves either the
+ * previous or the new save, never a partial one.
+ */
+public class AutosaveService implements AutoCloseable {
+    private final Path target;
+    private final Path temp;
+    private final AtomicReference<Memento> pending = new AtomicReference<>();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final Thread writer;
+    // guarded by pending for writes, so no snapshot is accepted after close has started
+    private volatile boolean running = true;
+    private volatile IOException lastError;
+
+    public AutosaveService(Path target){
+        this.target = target;
+        this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+        this.writer = new Thread(this::writeLoop, "autosave-" + target.getFileName());
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Loads the last completed save, if there is one.
+     */
+    public static Optional<Memento> recover(Path target) throws IOException {
+        if (!Files.exists(target)){
+            return Optional.empty();
+        }
+        return Optional.of(TextArea.decode(Files.readAllBytes(target)));
+    }
+
+    /**
+     * @throws IllegalStateException if the service has been closed
+     */
+    public void submit(Memento memento){
+        synchronized (pending){
+            if (!running){
+                throw new IllegalStateException("AutosaveService is closed");
+            }
+            pending.set(memento);
+        }
+        submitted.increment();
+        LockSupport.unpark(writer);
+    }
+
+    public long getSubmittedCount(){
+        return submitted.sum();
+    }
+
+    public long getWrittenCount(){
+        return written.sum();
+    }
+
+    /**
+     * The most recent write failure, or null. Failed saves are retried with the next snapshot.
+     */
+    public IOException getLastError(){
+        return lastError;
+    }
+
+    /**
+     * Writes any pending snapshot and stops the writer thread, waiting up to a minute for it.
+     * If interrupted it stops waiting and keeps the interrupt status; the writer still
+     * finishes the pending snapshot.
+     */
+    @Override
+    public void close(){
+        synchronized (pending){
+            running = false;
+        }
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.MINUTES.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop(){
+        while (true){
+            Memento memento = pending.getAndSet(null);
+            if (memento != null){
+                save(memento);
+                continue;
+            }
+            if (!running){
+                // a snapshot submitted before close is visible once running reads false
+                memento = pending.getAndSet(null);
+                if (memento == null){
+                    return;
+                }
+                save(memento);
+                continue;
+            }
+            LockSupport.park(this);
+        }
+    }
+
+    private void save(Memento memento){
+        ByteBuffer data = ByteBuffer.wrap(TextArea.encode(memento));
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+                while (data.hasRemaining()){
+                    channel.write(data);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory();
+            written.increment();
+        } catch (IOException e) {
+            lastError = e;
+        }
+    }
+
+    /**
+     * Makes the rename itself durable. Some platforms (Windows) cannot open a directory as a
+     * channel; there the rename is as durable as the file system makes it.
+     */
+    private void syncDirectory() throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel){
+            channel.force(true);
+        }
+    }
+}
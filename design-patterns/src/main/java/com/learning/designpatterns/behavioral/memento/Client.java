@@ -1,7 +1,12 @@
 package com.learning.designpatterns.behavioral.memento;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
 public class Client {
-    public static void main(String[] args){
+    public static void main(String[] args) throws IOException, InterruptedException {
         TextEditor editor = new TextEditor();
         editor.write("Like");
         editor.showContent();
@@ -11,5 +16,31 @@ public class Client {
         editor.showContent();
         editor.undo();
         editor.showContent();
+        editor.insert(4, " it");
+        editor.showContent();
+        editor.delete(0, 5);
+        editor.showContent();
+        editor.undo();
+        editor.showContent();
+
+        Path saveFile = Files.createTempFile("editor", ".autosave");
+        try (AutosaveService autosave = new AutosaveService(saveFile)) {
+            editor.setAutosave(autosave);
+            editor.write("Like and subscribe");
+        }
+        TextEditor recovered = new TextEditor();
+        AutosaveService.recover(saveFile).ifPresent(recovered::restoreFrom);
+        recovered.showContent();
+        Files.delete(saveFile);
+
+        Path sessionDir = Files.createTempDirectory("editor-sessions");
+        try (EditorSessionManager sessions = new EditorSessionManager(4, sessionDir, 50, TimeUnit.MILLISECONDS, 1 << 20)) {
+            for (int i = 0; i < 1000; i++) {
+                sessions.write("session-" + i, "Draft " + i);
+            }
+            Thread.sleep(200);
+            System.out.println("Reloaded: " + sessions.content("session-7").join());
+            System.out.println(sessions.metrics());
+        }
     }
 }
@@ -0,0 +1,403 @@
+package com.learning.designpatterns.behavioral.memento;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.learning.designpatterns.behavioral.memento.TextArea.Memento;
+
+/**
+ * Hosts many TextEditor sessions. Sessions are partitioned by id over a fixed number of
+ * single-threaded partitions and every operation on a session runs on its partition's
+ * thread, so editors are never shared between threads and need no locking.
+ *
+ * Sessions idle for longer than idleTimeout are dropped from memory and written to
+ * spillDirectory by a separate I/O thread, so a slow disk does not hold up the partitions;
+ * the next operation on them reloads the saved content, or takes it straight from memory if
+ * the write has not finished yet. Undo history does not survive eviction. close saves every
+ * resident session the same way, so a later manager on the same directory picks them up.
+ */
+public class EditorSessionManager implements AutoCloseable {
+    private final Partition[] partitions;
+    // writes and deletes saved sessions, in the order the partitions ask for them
+    private final ExecutorService io = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "editor-spill");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Path spillDirectory;
+    private final long idleTimeoutNanos;
+    private final long historyBudgetBytes;
+
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+
+    public EditorSessionManager(int partitionCount, Path spillDirectory, long idleTimeout, TimeUnit unit,
+                                long historyBudgetBytes) throws IOException {
+        Files.createDirectories(spillDirectory);
+        this.spillDirectory = spillDirectory;
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+        this.historyBudgetBytes = historyBudgetBytes;
+        this.partitions = new Partition[partitionCount];
+        long sweepNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(10), idleTimeoutNanos / 4);
+        for (int i = 0; i < partitionCount; i++){
+            partitions[i] = new Partition(i);
+            Partition partition = partitions[i];
+            partition.executor.scheduleWithFixedDelay(() -> partition.evict(false), sweepNanos, sweepNanos,
+                    TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public CompletableFuture<Void> write(String sessionId, String text){
+        return run(sessionId, editor -> editor.write(text));
+    }
+
+    public CompletableFuture<Void> insert(String sessionId, int index, String text){
+        return run(sessionId, editor -> editor.insert(index, text));
+    }
+
+    public CompletableFuture<Void> delete(String sessionId, int start, int end){
+        return run(sessionId, editor -> editor.delete(start, end));
+    }
+
+    public CompletableFuture<Void> undo(String sessionId){
+        return run(sessionId, TextEditor::undo);
+    }
+
+    public CompletableFuture<String> content(String sessionId){
+        return call(sessionId, TextEditor::getContent);
+    }
+
+    /**
+     * Ends a session and removes its saved content. The returned future completes once the
+     * saved content is deleted; a session opened again with the same id before that starts
+     * empty.
+     */
+    public CompletableFuture<Void> closeSession(String sessionId){
+        Partition partition = partitionFor(sessionId);
+        CompletableFuture<Void> deleted = new CompletableFuture<>();
+        submit(partition, () -> {
+            Session session = partition.sessions.remove(sessionId);
+            if (session != null){
+                session.close();
+            }
+            partition.unsaved.remove(sessionId);
+            partition.delete(sessionId, deleted);
+            return null;
+        }).whenComplete((ignored, e) -> {
+            if (e != null){
+                deleted.completeExceptionally(e);
+            }
+        });
+        return deleted;
+    }
+
+    public Metrics metrics(){
+        int resident = 0;
+        long historyBytes = 0;
+        for (Partition partition : partitions){
+            resident += partition.residentSessions;
+            historyBytes += partition.historyBytes;
+        }
+        return new Metrics(resident, historyBytes, operations.sum(), totalLatencyNanos.sum(),
+                maxLatencyNanos.get(), evictions.sum(), reloads.sum());
+    }
+
+    /**
+     * Saves every resident session once the operations already submitted have run, and waits
+     * up to a minute for the partitions and the writes. If interrupted it stops waiting and
+     * keeps the interrupt status.
+     */
+    @Override
+    public void close(){
+        for (Partition partition : partitions){
+            try {
+                partition.executor.execute(() -> partition.evict(true));
+            } catch (RejectedExecutionException e) {
+                // already closed
+            }
+            partition.executor.shutdown();
+        }
+        try {
+            for (Partition partition : partitions){
+                partition.executor.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            io.shutdown();
+            io.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            io.shutdown();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<Void> run(String sessionId, Consumer<TextEditor> operation){
+        return call(sessionId, editor -> {
+            operation.accept(editor);
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> call(String sessionId, Function<TextEditor, T> operation){
+        Partition partition = partitionFor(sessionId);
+        return submit(partition, () -> operation.apply(partition.open(sessionId).touch()));
+    }
+
+    private <T> CompletableFuture<T> submit(Partition partition, Callable<T> task){
+        long enqueued = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        partition.executor.execute(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            } finally {
+                long latency = System.nanoTime() - enqueued;
+                operations.increment();
+                totalLatencyNanos.add(latency);
+                maxLatencyNanos.accumulateAndGet(latency, Math::max);
+            }
+        });
+        return result;
+    }
+
+    private Partition partitionFor(String sessionId){
+        return partitions[Math.floorMod(sessionId.hashCode(), partitions.length)];
+    }
+
+    private Path spillFile(String sessionId){
+        String name = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(sessionId.getBytes(StandardCharsets.UTF_8));
+        return spillDirectory.resolve(name + ".session");
+    }
+
+    private final class Partition {
+        private final ScheduledExecutorService executor;
+        // only touched by this partition's thread
+        private final Map<String, Session> sessions = new HashMap<>();
+        // evicted sessions whose content is not on disk yet
+        private final Map<String, Memento> unsaved = new HashMap<>();
+        // closed sessions whose saved content may not be deleted yet, with the close they belong to
+        private final Map<String, Object> deleting = new HashMap<>();
+        private volatile int residentSessions;
+        private volatile long historyBytes;
+
+        private Partition(int index){
+            this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "editor-partition-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        private Session open(String sessionId) throws IOException {
+            Session session = sessions.get(sessionId);
+            if (session != null){
+                return session;
+            }
+            session = new Session(new TextEditor(new HistoryManager(historyBudgetBytes, 32, null)));
+            Path file = spillFile(sessionId);
+            Memento saving = unsaved.remove(sessionId);
+            if (saving != null){
+                session.editor.restoreFrom(saving);
+            } else if (!deleting.containsKey(sessionId) && Files.exists(file)){
+                session.editor.restoreFrom(TextArea.decode(Files.readAllBytes(file)));
+                reloads.increment();
+            }
+            sessions.put(sessionId, session);
+            residentSessions = sessions.size();
+            return session;
+        }
+
+        /**
+         * Evicts the sessions that have been idle for too long, or all of them.
+         */
+        private void evict(boolean all){
+            long now = System.nanoTime();
+            long bytes = 0;
+            for (Iterator<Map.Entry<String, Session>> it = sessions.entrySet().iterator(); it.hasNext(); ){
+                Map.Entry<String, Session> entry = it.next();
+                Session session = entry.getValue();
+                if (!all && now - session.lastAccess < idleTimeoutNanos){
+                    HistoryManager history = session.editor.getHistory();
+                    bytes += history.getResidentBytes() + history.getCompressedBytes();
+                    continue;
+                }
+                String sessionId = entry.getKey();
+                Memento content = session.editor.snapshot();
+                session.close();
+                it.remove();
+                unsaved.put(sessionId, content);
+                Object closed = deleting.get(sessionId);
+                io.execute(() -> save(sessionId, content, closed));
+                evictions.increment();
+            }
+            residentSessions = sessions.size();
+            historyBytes = bytes;
+        }
+
+        /**
+         * Queues the delete of a closed session's file. The I/O thread runs it before any later
+         * save of the same id, and until it has run open ignores the file.
+         */
+        private void delete(String sessionId, CompletableFuture<Void> deleted){
+            Object close = new Object();
+            deleting.put(sessionId, close);
+            io.execute(() -> {
+                try {
+                    Files.deleteIfExists(spillFile(sessionId));
+                } catch (IOException e) {
+                    // the file stays ignored until a new save of the id replaces it
+                    deleted.completeExceptionally(new UncheckedIOException(e));
+                    return;
+                }
+                try {
+                    executor.execute(() -> deleting.remove(sessionId, close));
+                } catch (RejectedExecutionException e) {
+                    // shutting down
+                }
+                deleted.complete(null);
+            });
+        }
+
+        // runs on the I/O thread, after the delete of closed if there is one
+        private void save(String sessionId, Memento content, Object closed){
+            boolean saved;
+            try {
+                Path file = spillFile(sessionId);
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                Files.write(temp, TextArea.encode(content));
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                saved = true;
+            } catch (IOException e) {
+                saved = false;
+            }
+            boolean succeeded = saved;
+            try {
+                executor.execute(() -> saved(sessionId, content, closed, succeeded));
+            } catch (RejectedExecutionException e) {
+                // shutting down; a failed write is lost with the rest of memory
+            }
+        }
+
+        private void saved(String sessionId, Memento content, Object closed, boolean succeeded){
+            if (succeeded && closed != null){
+                // the new file replaces whatever a failed delete left behind
+                deleting.remove(sessionId, closed);
+            }
+            if (unsaved.get(sessionId) != content){
+                // reopened or closed in the meantime
+                return;
+            }
+            unsaved.remove(sessionId);
+            if (!succeeded){
+                // keep the session in memory; the next sweep evicts and tries again
+                Session session = new Session(new TextEditor(new HistoryManager(historyBudgetBytes, 32, null)));
+                session.editor.restoreFrom(content);
+                sessions.put(sessionId, session);
+                residentSessions = sessions.size();
+            }
+        }
+    }
+
+    private static final class Session {
+        private final TextEditor editor;
+        private long lastAccess = System.nanoTime();
+
+        private Session(TextEditor editor){
+            this.editor = editor;
+        }
+
+        private TextEditor touch(){
+            lastAccess = System.nanoTime();
+            return editor;
+        }
+
+        private void close(){
+            try {
+                editor.getHistory().close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public static final class Metrics {
+        private final int residentSessions;
+        private final long historyBytes;
+        private final long operations;
+        private final long totalLatencyNanos;
+        private final long maxLatencyNanos;
+        private final long evictions;
+        private final long reloads;
+
+        private Metrics(int residentSessions, long historyBytes, long operations, long totalLatencyNanos,
+                        long maxLatencyNanos, long evictions, long reloads){
+            this.residentSessions = residentSessions;
+            this.historyBytes = historyBytes;
+            this.operations = operations;
+            this.totalLatencyNanos = totalLatencyNanos;
+            this.maxLatencyNanos = maxLatencyNanos;
+            this.evictions = evictions;
+            this.reloads = reloads;
+        }
+
+        public int getResidentSessions(){
+            return residentSessions;
+        }
+
+        /**
+         * Heap held by undo history of resident sessions, as of the last eviction sweep.
+         */
+        public long getHistoryBytes(){
+            return historyBytes;
+        }
+
+        public long getOperations(){
+            return operations;
+        }
+
+        public double getMeanLatencyNanos(){
+            return operations == 0 ? 0 : (double) totalLatencyNanos / operations;
+        }
+
+        public long getMaxLatencyNanos(){
+            return maxLatencyNanos;
+        }
+
+        public long getEvictions(){
+            return evictions;
+        }
+
+        public long getReloads(){
+            return reloads;
+        }
+
+        @Override
+        public String toString(){
+            return "sessions=" + residentSessions + ", historyBytes=" + historyBytes + ", operations=" + operations
+                    + ", meanLatency=" + (long) getMeanLatencyNanos() + "ns, maxLatency=" + maxLatencyNanos
+                    + "ns, evictions=" + evictions + ", reloads=" + reloads;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.learning.designpatterns.behavioral.memento;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static com.learning.designpatterns.behavioral.memento.TextArea.Memento;
+
+/**
+ * Caretaker for TextEditor history that stays within a memory budget. When the mementos on
+ * the heap exceed the budget, the oldest ones are compressed first; once only compressed
+ * ones are left to shrink, the oldest compressed mementos are appended to a spill file.
+ *
+ * A compressed memento is only the diff against its newer neighbour (see
+ * TextArea.encodeDiff), so compressing and spilling cost the size of an edit rather than of
+ * the document. The newest memento is always resident, and undoing rebuilds the one before
+ * it from its diff. A resident memento is costed by its unshared rope nodes, which is what
+ * compressing it frees.
+ *
+ * The newest keepResident mementos are never compressed, so ordinary undo stays cheap.
+ * A null spillPath means a temporary file is created on the first spill.
+ */
+public class HistoryManager implements AutoCloseable {
+    // diffs this small are kept as they are
+    private static final int MIN_DEFLATE_BYTES = 512;
+
+    private final long budgetBytes;
+    private final int keepResident;
+    private Path spillPath;
+    private final Deque<Entry> history = new ArrayDeque<>();
+    // oldest first; may contain entries that have since changed state or been removed
+    private final Deque<Entry> residentQueue = new ArrayDeque<>();
+    private final Deque<Entry> compressedQueue = new ArrayDeque<>();
+
+    private FileChannel spillFile;
+    private long spillFileSize;
+    private long residentBytes;
+    private long compressedBytes;
+    private long spilledBytes;
+
+    public HistoryManager(long budgetBytes, int keepResident, Path spillPath){
+        if (budgetBytes <= 0 || keepResident < 1){
+            throw new IllegalArgumentException("budgetBytes and keepResident must be positive");
+        }
+        this.budgetBytes = budgetBytes;
+        this.keepResident = keepResident;
+        this.spillPath = spillPath;
+    }
+
+    public void add(Memento memento){
+        Entry entry = new Entry(memento);
+        Entry previous = history.peekLast();
+        if (previous != null){
+            previous.newer = entry;
+        }
+        history.addLast(entry);
+        residentQueue.addLast(entry);
+        residentBytes += entry.size;
+        enforceBudget();
+    }
+
+    public Memento getLast(){
+        Entry entry = history.peekLast();
+        if (entry == null){
+            throw new NoSuchElementException("History is empty");
+        }
+        return entry.memento;
+    }
+
+    public void removeLast(){
+        Entry entry = history.removeLast();
+        entry.removed = true;
+        Entry last = history.peekLast();
+        if (last != null){
+            last.newer = null;
+            if (last.state != State.RESIDENT){
+                // the removed entry was the newest, so it is resident and last's diff applies to it
+                reload(last, entry.memento);
+            }
+        }
+        entry.memento = null;
+        switch (entry.state){
+            case RESIDENT:
+                residentBytes -= entry.size;
+                break;
+            case COMPRESSED:
+                compressedBytes -= entry.compressed.length;
+                break;
+            case SPILLED:
+                spilledBytes -= entry.spillLength;
+                break;
+        }
+        enforceBudget();
+    }
+
+    public int size(){
+        return history.size();
+    }
+
+    public long getResidentBytes(){
+        return residentBytes;
+    }
+
+    public long getCompressedBytes(){
+        return compressedBytes;
+    }
+
+    /**
+     * Bytes of spilled mementos still in the history. The spill file itself is append-only
+     * and may be larger.
+     */
+    public long getSpilledBytes(){
+        return spilledBytes;
+    }
+
+    @Override
+    public String toString(){
+        return "HistoryManager[entries=" + history.size() + ", resident=" + residentBytes
+                + "B, compressed=" + compressedBytes + "B, spilled=" + spilledBytes + "B]";
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (spillFile != null){
+            spillFile.close();
+            Files.deleteIfExists(spillPath);
+        }
+    }
+
+    private void enforceBudget(){
+        while (residentBytes + compressedBytes > budgetBytes){
+            Entry oldestResident = oldest(residentQueue, State.RESIDENT);
+            if (oldestResident != null && isOutsideHotSet(oldestResident)){
+                residentQueue.pollFirst();
+                compress(oldestResident);
+                continue;
+            }
+            Entry oldestCompressed = oldest(compressedQueue, State.COMPRESSED);
+            if (oldestCompressed == null){
+                return;
+            }
+            compressedQueue.pollFirst();
+            spill(oldestCompressed);
+        }
+    }
+
+    private Entry oldest(Deque<Entry> queue, State state){
+        Entry entry = queue.peekFirst();
+        while (entry != null && (entry.removed || entry.state != state)){
+            queue.pollFirst();
+            entry = queue.peekFirst();
+        }
+        return entry;
+    }
+
+    private boolean isOutsideHotSet(Entry entry){
+        int newer = 0;
+        for (var it = history.descendingIterator(); it.hasNext() && newer < keepResident; newer++){
+            if (it.next() == entry){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void compress(Entry entry){
+        byte[] raw = TextArea.encodeDiff(entry.memento, entry.newer.memento);
+        byte[] compressed = raw;
+        if (raw.length > MIN_DEFLATE_BYTES){
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()){
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            deflater.end();
+            compressed = out.toByteArray();
+        }
+        entry.compressed = compressed;
+        entry.rawLength = raw.length;
+        entry.memento = null;
+        entry.state = State.COMPRESSED;
+        residentBytes -= entry.size;
+        compressedBytes += entry.compressed.length;
+        compressedQueue.addLast(entry);
+    }
+
+    private void spill(Entry entry){
+        try {
+            if (spillFile == null){
+                if (spillPath == null){
+                    spillPath = Files.createTempFile("editor-history", ".spill");
+                    spillPath.toFile().deleteOnExit();
+                }
+                spillFile = FileChannel.open(spillPath, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            ByteBuffer data = ByteBuffer.wrap(entry.compressed);
+            long offset = spillFileSize;
+            while (data.hasRemaining()){
+                spillFile.write(data, offset + data.position());
+            }
+            spillFileSize += entry.compressed.length;
+            entry.spillOffset = offset;
+            entry.spillLength = entry.compressed.length;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not spill history to " + spillPath, e);
+        }
+        compressedBytes -= entry.compressed.length;
+        spilledBytes += entry.spillLength;
+        entry.compressed = null;
+        entry.state = State.SPILLED;
+    }
+
+    private void reload(Entry entry, Memento newer){
+        byte[] compressed = entry.compressed;
+        if (entry.state == State.SPILLED){
+            compressed = new byte[entry.spillLength];
+            ByteBuffer buffer = ByteBuffer.wrap(compressed);
+            try {
+                while (buffer.hasRemaining()){
+                    if (spillFile.read(buffer, entry.spillOffset + buffer.position()) < 0){
+                        throw new IOException("Unexpected end of spill file");
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read history from " + spillPath, e);
+            }
+            spilledBytes -= entry.spillLength;
+        } else {
+            compressedBytes -= compressed.length;
+        }
+        byte[] raw = compressed;
+        if (entry.rawLength > MIN_DEFLATE_BYTES){
+            Inflater inflater = new Inflater();
+            inflater.setInput(compressed);
+            raw = new byte[entry.rawLength];
+            try {
+                int read = 0;
+                while (read < raw.length && !inflater.finished()){
+                    read += inflater.inflate(raw, read, raw.length - read);
+                }
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Corrupt history entry", e);
+            } finally {
+                inflater.end();
+            }
+        }
+        entry.memento = TextArea.decodeDiff(newer, raw);
+        entry.size = TextArea.estimateBytes(entry.memento);
+        entry.compressed = null;
+        entry.state = State.RESIDENT;
+        residentBytes += entry.size;
+        residentQueue.addLast(entry);
+    }
+
+    private enum State { RESIDENT, COMPRESSED, SPILLED }
+
+    private static final class Entry {
+        private Memento memento;
+        private int size;
+        private byte[] compressed;
+        private int rawLength;
+        private long spillOffset;
+        private int spillLength;
+        private State state = State.RESIDENT;
+        private boolean removed;
+        private Entry newer;
+
+        private Entry(Memento memento){
+            this.memento = memento;
+            this.size = TextArea.estimateBytes(memento);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.learning.designpatterns.behavioral.memento;
+
+/**
+ * Immutable text stored as a balanced tree of string chunks. Inserting or deleting creates
+ * O(log n) new nodes and shares everything else with the original rope, so keeping an old
+ * version around costs next to nothing. The tree is kept balanced like an AVL tree.
+ */
+public abstract class Rope {
+    static final int MAX_LEAF = 512;
+
+    public static final Rope EMPTY = new Leaf("");
+
+    public static Rope of(String text){
+        if (text.length() <= MAX_LEAF){
+            return text.isEmpty() ? EMPTY : new Leaf(text);
+        }
+        int middle = text.length() / 2;
+        return new Node(of(text.substring(0, middle)), of(text.substring(middle)));
+    }
+
+    public abstract int length();
+
+    public abstract char charAt(int index);
+
+    abstract int height();
+
+    abstract void appendTo(StringBuilder builder);
+
+    /**
+     * Number of leading characters this rope shares with text starting at offset. Only visits
+     * the leaves up to the first difference.
+     */
+    abstract int matchPrefix(String text, int offset);
+
+    /**
+     * Number of trailing characters, at most limit, this rope shares with text ending at end.
+     * Only visits the leaves from the end back to the first difference.
+     */
+    abstract int matchSuffix(String text, int end, int limit);
+
+    /**
+     * Returns [0, index) and [index, length) as two ropes.
+     */
+    abstract Rope[] split(int index);
+
+    public Rope insert(int index, String text){
+        checkIndex(index, length());
+        if (text.isEmpty()){
+            return this;
+        }
+        Rope[] parts = split(index);
+        return concat(concat(parts[0], of(text)), parts[1]);
+    }
+
+    public Rope delete(int start, int end){
+        checkIndex(start, end);
+        checkIndex(end, length());
+        if (start == end){
+            return this;
+        }
+        Rope head = split(start)[0];
+        Rope tail = split(end)[1];
+        return concat(head, tail);
+    }
+
+    /**
+     * Copies the characters in [start, end); O(log n) plus the length of the copy.
+     */
+    public String substring(int start, int end){
+        checkIndex(start, end);
+        checkIndex(end, length());
+        StringBuilder builder = new StringBuilder(end - start);
+        split(end)[0].split(start)[1].appendTo(builder);
+        return builder.toString();
+    }
+
+    public Rope append(String text){
+        return concat(this, of(text));
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder builder = new StringBuilder(length());
+        appendTo(builder);
+        return builder.toString();
+    }
+
+    static Rope concat(Rope left, Rope right){
+        if (left.length() == 0){
+            return right;
+        }
+        if (right.length() == 0){
+            return left;
+        }
+        if (left instanceof Leaf && right instanceof Leaf && left.length() + right.length() <= MAX_LEAF){
+            return new Leaf(((Leaf) left).text + ((Leaf) right).text);
+        }
+        int difference = left.height() - right.height();
+        if (difference > 1){
+            Node l = (Node) left;
+            return balance(l.left, concat(l.right, right));
+        }
+        if (difference < -1){
+            Node r = (Node) right;
+            return balance(concat(left, r.left), r.right);
+        }
+        return new Node(left, right);
+    }
+
+    private static Rope balance(Rope left, Rope right){
+        int difference = left.height() - right.height();
+        if (difference > 1){
+            Node l = (Node) left;
+            if (l.left.height() >= l.right.height()){
+                return new Node(l.left, new Node(l.right, right));
+            }
+            Node lr = (Node) l.right;
+            return new Node(new Node(l.left, lr.left), new Node(lr.right, right));
+        }
+        if (difference < -1){
+            Node r = (Node) right;
+            if (r.right.height() >= r.left.height()){
+                return new Node(new Node(left, r.left), r.right);
+            }
+            Node rl = (Node) r.left;
+            return new Node(new Node(left, rl.left), new Node(rl.right, r.right));
+        }
+        return new Node(left, right);
+    }
+
+    private static void checkIndex(int index, int limit){
+        if (index < 0 || index > limit){
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + limit);
+        }
+    }
+
+    private static final class Leaf extends Rope {
+        private final String text;
+
+        private Leaf(String text){
+            this.text = text;
+        }
+
+        @Override
+        public int length(){
+            return text.length();
+        }
+
+        @Override
+        public char charAt(int index){
+            return text.charAt(index);
+        }
+
+        @Override
+        int height(){
+            return 0;
+        }
+
+        @Override
+        void appendTo(StringBuilder builder){
+            builder.append(text);
+        }
+
+        @Override
+        int matchPrefix(String other, int offset){
+            int max = Math.min(text.length(), other.length() - offset);
+            int matched = 0;
+            while (matched < max && text.charAt(matched) == other.charAt(offset + matched)){
+                matched++;
+            }
+            return matched;
+        }
+
+        @Override
+        int matchSuffix(String other, int end, int limit){
+            int max = Math.min(limit, Math.min(text.length(), end));
+            int matched = 0;
+            while (matched < max && text.charAt(text.length() - 1 - matched) == other.charAt(end - 1 - matched)){
+                matched++;
+            }
+            return matched;
+        }
+
+        @Override
+        Rope[] split(int index){
+            return new Rope[]{of(text.substring(0, index)), of(text.substring(index))};
+        }
+    }
+
+    private static final class Node extends Rope {
+        private final Rope left;
+        private final Rope right;
+        private final int length;
+        private final int height;
+
+        private Node(Rope left, Rope right){
+            this.left = left;
+            this.right = right;
+            this.length = left.length() + right.length();
+            this.height = Math.max(left.height(), right.height()) + 1;
+        }
+
+        @Override
+        public int length(){
+            return length;
+        }
+
+        @Override
+        public char charAt(int index){
+            int leftLength = left.length();
+            return index < leftLength ? left.charAt(index) : right.charAt(index - leftLength);
+        }
+
+        @Override
+        int height(){
+            return height;
+        }
+
+        @Override
+        void appendTo(StringBuilder builder){
+            left.appendTo(builder);
+            right.appendTo(builder);
+        }
+
+        @Override
+        int matchPrefix(String text, int offset){
+            int matched = left.matchPrefix(text, offset);
+            return matched < left.length() ? matched : matched + right.matchPrefix(text, offset + matched);
+        }
+
+        @Override
+        int matchSuffix(String text, int end, int limit){
+            int matched = right.matchSuffix(text, end, limit);
+            return matched < right.length() || matched == limit
+                    ? matched
+                    : matched + left.matchSuffix(text, end - matched, limit - matched);
+        }
+
+        @Override
+        Rope[] split(int index){
+            int leftLength = left.length();
+            if (index == leftLength){
+                return new Rope[]{left, right};
+            }
+            if (index < leftLength){
+                Rope[] parts = left.split(index);
+                return new Rope[]{parts[0], concat(parts[1], right)};
+            }
+            Rope[] parts = right.split(index - leftLength);
+            return new Rope[]{concat(left, parts[0]), parts[1]};
+        }
+    }
+}
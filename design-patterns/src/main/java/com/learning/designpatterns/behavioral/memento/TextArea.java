@@ -1,33 +1,200 @@
 package com.learning.designpatterns.behavioral.memento;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
 public class TextArea{
-    private String text;
+    // rough heap cost of the tree nodes an edit creates, on top of the inserted characters
+    private static final int EDIT_OVERHEAD_BYTES = 256;
+    private static final AtomicLong SNAPSHOTS = new AtomicLong();
+
+    private Rope text = Rope.EMPTY;
+    // estimated bytes of new, unshared rope nodes since the last snapshot
+    private int unsharedBytes;
+    // the last snapshot taken or restored, and how much of its start and end is still unchanged
+    private Rope snapshotText;
+    private long snapshotId;
+    private int unchangedPrefix;
+    private int unchangedSuffix;
+
+    /**
+     * Replaces the content. Only the part that differs from the current content becomes new
+     * rope nodes; the common prefix and suffix are shared with earlier snapshots. The current
+     * content is compared leaf by leaf rather than copied, so the cost is the length of text
+     * plus O(log n) per leaf compared.
+     */
     public void setText(String text){
-        this.text = text;
+        Rope current = this.text;
+        int max = Math.min(current.length(), text.length());
+        int prefix = current.matchPrefix(text, 0);
+        int suffix = current.matchSuffix(text, text.length(), max - prefix);
+        Rope edited = current.delete(prefix, current.length() - suffix);
+        this.text = edited.insert(prefix, text.substring(prefix, text.length() - suffix));
+        unsharedBytes += EDIT_OVERHEAD_BYTES + (text.length() - suffix - prefix) * 2;
+        edited(prefix, suffix);
+    }
+
+    public void insert(int index, String text){
+        this.text = this.text.insert(index, text);
+        unsharedBytes += EDIT_OVERHEAD_BYTES + text.length() * 2;
+        edited(index, this.text.length() - index - text.length());
+    }
+
+    public void delete(int start, int end){
+        this.text = this.text.delete(start, end);
+        unsharedBytes += EDIT_OVERHEAD_BYTES;
+        edited(start, this.text.length() - start);
     }
 
     public String getContent() {
-        return this.text;
+        return this.text.toString();
     }
 
+    public int length() {
+        return this.text.length();
+    }
+
+    /**
+     * O(1) plus the text the edits since the last snapshot replaced: the snapshot is the
+     * current rope, which later edits never modify, and the diff against the previous snapshot
+     * is known from the edits themselves.
+     */
     public Memento takeSnapshot(){
-        return new Memento(this.text);
+        long id = SNAPSHOTS.incrementAndGet();
+        Memento snapshot;
+        if (snapshotText == null){
+            snapshot = new Memento(this.text, unsharedBytes, id);
+        } else {
+            int prefix = Math.min(unchangedPrefix, Math.min(snapshotText.length(), text.length()));
+            int suffix = Math.min(unchangedSuffix, Math.min(snapshotText.length(), text.length()) - prefix);
+            String replaced = snapshotText.substring(prefix, snapshotText.length() - suffix);
+            snapshot = new Memento(this.text, unsharedBytes + replaced.length() * 2, id,
+                    snapshotId, prefix, suffix, replaced);
+        }
+        startDiff(snapshot);
+        return snapshot;
     }
 
     public void restore(Memento memento){
-        System.out.println("Retrieved text from memento is: " + memento.getSavedText());
         this.text = memento.getSavedText();
+        startDiff(memento);
+    }
+
+    /**
+     * Approximate heap footprint a memento adds on top of earlier ones, used by
+     * HistoryManager for its budget.
+     */
+    static int estimateBytes(Memento memento){
+        return 32 + memento.unsharedBytes;
+    }
+
+    /**
+     * Serialises a memento as its full text so it can be kept compressed or on disk.
+     */
+    static byte[] encode(Memento memento){
+        return memento.getSavedText().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static Memento decode(byte[] bytes){
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        return new Memento(Rope.of(text), EDIT_OVERHEAD_BYTES + text.length() * 2, SNAPSHOTS.incrementAndGet());
+    }
+
+    /**
+     * Encodes older as a diff against newer: [long id][int prefix][int suffix][replaced text],
+     * meaning older is the first prefix and last suffix characters of newer with the replaced
+     * text in between. When newer was taken right after older the diff is the one newer
+     * already carries; otherwise the two texts are compared.
+     */
+    static byte[] encodeDiff(Memento older, Memento newer){
+        int prefix;
+        int suffix;
+        String replaced;
+        if (newer.baseId == older.id){
+            prefix = newer.prefix;
+            suffix = newer.suffix;
+            replaced = newer.replaced;
+        } else {
+            Rope oldText = older.text;
+            Rope newText = newer.text;
+            int max = Math.min(oldText.length(), newText.length());
+            prefix = 0;
+            while (prefix < max && oldText.charAt(prefix) == newText.charAt(prefix)){
+                prefix++;
+            }
+            suffix = 0;
+            while (suffix < max - prefix
+                    && oldText.charAt(oldText.length() - 1 - suffix) == newText.charAt(newText.length() - 1 - suffix)){
+                suffix++;
+            }
+            replaced = oldText.substring(prefix, oldText.length() - suffix);
+        }
+        byte[] text = replaced.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(16 + text.length)
+                .putLong(older.id)
+                .putInt(prefix)
+                .putInt(suffix)
+                .put(text)
+                .array();
+    }
+
+    /**
+     * Rebuilds the memento encoded by encodeDiff from newer. The result shares everything
+     * but the replaced text with newer.
+     */
+    static Memento decodeDiff(Memento newer, byte[] diff){
+        ByteBuffer buffer = ByteBuffer.wrap(diff);
+        long id = buffer.getLong();
+        int prefix = buffer.getInt();
+        int suffix = buffer.getInt();
+        String replaced = new String(diff, buffer.position(), buffer.remaining(), StandardCharsets.UTF_8);
+        Rope newText = newer.text;
+        Rope text = newText.delete(prefix, newText.length() - suffix).insert(prefix, replaced);
+        return new Memento(text, EDIT_OVERHEAD_BYTES + replaced.length() * 2, id);
+    }
+
+    private void edited(int prefix, int suffix){
+        unchangedPrefix = Math.min(unchangedPrefix, prefix);
+        unchangedSuffix = Math.min(unchangedSuffix, suffix);
+    }
+
+    private void startDiff(Memento snapshot){
+        snapshotText = snapshot.text;
+        snapshotId = snapshot.id;
+        unchangedPrefix = Integer.MAX_VALUE;
+        unchangedSuffix = Integer.MAX_VALUE;
+        unsharedBytes = 0;
     }
 
     public static class Memento{
-        private final String text;
-        private Memento(String textToSave){
-            text = textToSave;
+        private final Rope text;
+        private final int unsharedBytes;
+        private final long id;
+        // how this snapshot differs from snapshot baseId: the text between the first prefix
+        // and last suffix characters replaced what was there; baseId is 0 when unknown
+        private final long baseId;
+        private final int prefix;
+        private final int suffix;
+        private final String replaced;
+
+        private Memento(Rope textToSave, int unsharedBytes, long id){
+            this(textToSave, unsharedBytes, id, 0, 0, 0, null);
+        }
+
+        private Memento(Rope textToSave, int unsharedBytes, long id, long baseId, int prefix, int suffix, String replaced){
+            this.text = textToSave;
+            this.unsharedBytes = unsharedBytes;
+            this.id = id;
+            this.baseId = baseId;
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.replaced = replaced;
         }
 
-        private String getSavedText(){
+        private Rope getSavedText(){
             return text;
         }
 
     }
-}
\ No newline at end of file
+}
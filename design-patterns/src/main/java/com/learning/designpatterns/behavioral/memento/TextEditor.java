@@ -1,34 +1,92 @@
 package com.learning.designpatterns.behavioral.memento;
 
-import java.util.Deque;
-import java.util.LinkedList;
-
 import static com.learning.designpatterns.behavioral.memento.TextArea.Memento;
 
 public class TextEditor {
-    private Deque<Memento> stateHistory;
+    private static final long DEFAULT_HISTORY_BUDGET = 64L * 1024 * 1024;
+
+    private HistoryManager stateHistory;
     private TextArea textArea;
+    private AutosaveService autosave;
 
     public TextEditor(){
-        stateHistory = new LinkedList<>();
+        this(new HistoryManager(DEFAULT_HISTORY_BUDGET, 32, null));
+    }
+
+    public TextEditor(HistoryManager stateHistory){
+        this.stateHistory = stateHistory;
         textArea = new TextArea();
     }
 
     public void write(String text){
         //System.out.println("Writing text: " + text);
         textArea.setText(text);
-        stateHistory.add(textArea.takeSnapshot());
+        record();
+    }
+
+    public void insert(int index, String text){
+        textArea.insert(index, text);
+        record();
+    }
+
+    public void delete(int start, int end){
+        textArea.delete(start, end);
+        record();
+    }
+
+    public void setAutosave(AutosaveService autosave){
+        this.autosave = autosave;
+    }
+
+    /**
+     * Continues editing from a snapshot, e.g. one recovered by AutosaveService.
+     */
+    public void restoreFrom(Memento memento){
+        textArea.restore(memento);
+        record();
     }
 
+    /**
+     * Goes back to the previous snapshot; does nothing when there is none, e.g. right after
+     * restoreFrom.
+     */
     public void undo(){
+        if (stateHistory.size() <= 1){
+            return;
+        }
         stateHistory.removeLast();
         Memento memento = stateHistory.getLast();
         System.out.println("Undoing to previous state...");
         textArea.restore(memento);
+        if (autosave != null){
+            autosave.submit(memento);
+        }
     }
 
     public void showContent() {
         System.out.println("TextEditor: Current Content: " + textArea.getContent());
     }
-}
 
+    public String getContent() {
+        return textArea.getContent();
+    }
+
+    /**
+     * Snapshot of the current content, e.g. to save it elsewhere.
+     */
+    Memento snapshot() {
+        return textArea.takeSnapshot();
+    }
+
+    public HistoryManager getHistory() {
+        return stateHistory;
+    }
+
+    private void record(){
+        Memento snapshot = textArea.takeSnapshot();
+        stateHistory.add(snapshot);
+        if (autosave != null){
+            autosave.submit(snapshot);
+        }
+    }
+}
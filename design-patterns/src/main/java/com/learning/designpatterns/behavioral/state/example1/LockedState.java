@@ -1,19 +1,18 @@
 package com.learning.designpatterns.behavioral.state.example1;
 
 public class LockedState extends State{
-    public LockedState(Phone phone){
-        super(phone);
+    static final LockedState INSTANCE = new LockedState();
+
+    private LockedState(){
     }
 
     @Override
-    public void onHome(){
+    public void onHome(Phone phone){
         System.out.println("on home screen and unlocked state");
-        phone.setState(new ReadyState(phone));
     }
  
     @Override 
-    public void onPowerButton(){
+    public void onPowerButton(Phone phone){
         System.out.println("In display off and locked state");
-        phone.setState(new OffState(phone));
     }
-}
\ No newline at end of file
+}
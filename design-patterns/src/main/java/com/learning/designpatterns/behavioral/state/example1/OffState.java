@@ -1,21 +1,18 @@
 package com.learning.designpatterns.behavioral.state.example1;
 
 public class OffState extends State{
-    private Phone phone;
-    public OffState(Phone phone){
-        super(phone);
-        this.phone = phone;
+    static final OffState INSTANCE = new OffState();
+
+    private OffState(){
     }
 
     @Override
-    public void onHome(){
+    public void onHome(Phone phone){
         System.out.println("On home screen and locked");
-        phone.setState(new LockedState(phone));
     }
  
     @Override 
-    public void onPowerButton(){
+    public void onPowerButton(Phone phone){
         System.out.println("On home screen and locked");
-        phone.setState(new LockedState(phone));
     }
-}
\ No newline at end of file
+}
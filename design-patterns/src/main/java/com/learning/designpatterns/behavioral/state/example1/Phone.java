@@ -1,22 +1,71 @@
 package com.learning.designpatterns.behavioral.state.example1;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import com.learning.designpatterns.behavioral.state.fsm.EventLog;
+import com.learning.designpatterns.behavioral.state.fsm.StateMachine;
+
 public class Phone{
-    private State state;
+    public static final int OFF = 0;
+    public static final int LOCKED = 1;
+    public static final int READY = 2;
+
+    public static final int HOME = 0;
+    public static final int POWER = 1;
+
+    public static final StateMachine<Phone> MACHINE = StateMachine.<Phone>builder(
+                    new String[]{"OFF", "LOCKED", "READY"}, new String[]{"HOME", "POWER"})
+            .on(OFF, HOME, LOCKED, OffState.INSTANCE::onHome)
+            .on(OFF, POWER, LOCKED, OffState.INSTANCE::onPowerButton)
+            .on(LOCKED, HOME, READY, LockedState.INSTANCE::onHome)
+            .on(LOCKED, POWER, OFF, LockedState.INSTANCE::onPowerButton)
+            .on(READY, HOME, READY, ReadyState.INSTANCE::onHome)
+            .on(READY, POWER, OFF, ReadyState.INSTANCE::onPowerButton)
+            .build();
+
+    private int state;
+    private final EventLog<Phone> log;
+    private final int id;
 
     Phone(){
-        state = new OffState(this);
+        state = OFF;
+        log = null;
+        id = 0;
     }
 
-    public void setState(State state){
-        this.state = state;
+    /**
+     * A phone whose button presses are kept in log as context id, so it comes back in the
+     * state it was left in after a restart.
+     */
+    Phone(EventLog<Phone> log, int id){
+        this.log = log;
+        this.id = id;
+        this.state = log.state(id);
+    }
+
+    public int getState(){
+        return state;
     }
 
     public void pressPowerButton(){
-        state.onPowerButton();
+        press(POWER);
     }
 
     public void pressHomeButton(){
-        state.onHome();
+        press(HOME);
+    }
+
+    private void press(int button){
+        if (log == null){
+            state = MACHINE.fire(this, state, button);
+            return;
+        }
+        try {
+            state = log.fire(this, id, button);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
 
@@ -1,18 +1,18 @@
 package com.learning.designpatterns.behavioral.state.example1;
 
 public class ReadyState extends State{
-    public ReadyState(Phone phone){
-        super(phone);
+    static final ReadyState INSTANCE = new ReadyState();
+
+    private ReadyState(){
     }
 
     @Override
-    public void onHome(){
+    public void onHome(Phone phone){
         System.out.println("on home screen and ready to use");
     }
  
     @Override 
-    public void onPowerButton(){
+    public void onPowerButton(Phone phone){
         System.out.println("In display off and locked state");
-        phone.setState(new OffState(phone));
     }
-}
\ No newline at end of file
+}
@@ -1,13 +1,12 @@
 package com.learning.designpatterns.behavioral.state.example1;
 
+/**
+ * Behaviour of the phone in one state. States are stateless singletons; which state comes
+ * next is decided by the transition table in Phone.
+ */
 public abstract class State{
-        protected Phone phone;
-        public State(Phone phone){
-            this.phone = phone;
-        }
-    
-        abstract void onHome();
-        abstract void onPowerButton();
+        abstract void onHome(Phone phone);
+        abstract void onPowerButton(Phone phone);
 }    
     
 
@@ -1,7 +1,14 @@
 package com.learning.designpatterns.behavioral.state.example1;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import com.learning.designpatterns.behavioral.state.fsm.EventLog;
+
 public class Test {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         Phone phone = new Phone();
         phone.pressHomeButton();
         phone.pressHomeButton();
@@ -11,6 +18,40 @@ public class Test {
         phone.pressHomeButton();
         phone.pressHomeButton();
         phone.pressHomeButton();
+
+        // A phone that keeps its state in an event log and gets it back after a restart
+        Path phoneLog = Files.createTempDirectory("phone");
+        try (EventLog<Phone> log = EventLog.open(phoneLog, Phone.MACHINE, 1, 4096, 100)) {
+            Phone logged = new Phone(log, 0);
+            logged.pressPowerButton();
+            logged.pressHomeButton();
+        }
+        try (EventLog<Phone> log = EventLog.open(phoneLog, Phone.MACHINE, 1, 4096, 100)) {
+            System.out.println("Phone state after restart: " + Phone.MACHINE.stateName(new Phone(log, 0).getState()));
+        }
+
+        // A million phones whose button presses are logged instead of saving every phone
+        Path directory = Files.createTempDirectory("phones");
+        int phones = 1_000_000;
+        SplittableRandom random = new SplittableRandom(7);
+        long start = System.nanoTime();
+        try (EventLog<Phone> log = EventLog.open(directory, Phone.MACHINE, phones, 64 << 20, 4_000_000)) {
+            for (int i = 0; i < 10_000_000; i++) {
+                log.append(random.nextInt(phones), random.nextInt(2));
+            }
+            System.out.printf("logged %d events in %d ms%n", log.sequence(), (System.nanoTime() - start) / 1_000_000);
+        }
+        start = System.nanoTime();
+        try (EventLog<Phone> log = EventLog.open(directory, Phone.MACHINE, phones, 64 << 20, 4_000_000)) {
+            int ready = 0;
+            for (int i = 0; i < phones; i++) {
+                if (log.state(i) == Phone.READY) {
+                    ready++;
+                }
+            }
+            System.out.printf("recovered in %d ms, replayed %d of %d events, %d phones ready%n",
+                    (System.nanoTime() - start) / 1_000_000, log.replayed(), log.sequence(), ready);
+        }
     }
     
 }
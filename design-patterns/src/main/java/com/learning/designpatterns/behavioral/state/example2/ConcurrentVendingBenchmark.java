@@ -0,0 +1,94 @@
+package com.learning.designpatterns.behavioral.state.example2;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Contention benchmark for ConcurrentVendingMachine: every thread alternates insertCoin and
+ * pressButton, first all on one machine and then on random machines out of a large pool.
+ * After each run it checks that no coin was lost and nothing was dispensed twice: per machine,
+ * accepted coins minus dispensed items must equal the coin still inside.
+ */
+public class ConcurrentVendingBenchmark {
+    private static final int MANY = 1 << 16;
+
+    public static void main(String[] args) throws InterruptedException {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 500;
+        int maxThreads = Runtime.getRuntime().availableProcessors() * 2;
+        System.out.printf("%-8s %15s %15s%n", "threads", "one machine", MANY + " machines");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double one = run(1, threads, millis);
+            double many = run(MANY, threads, millis);
+            System.out.printf("%-8d %11.1f M/s %11.1f M/s%n", threads, one, many);
+        }
+    }
+
+    /**
+     * Returns millions of events per second over all threads.
+     */
+    private static double run(int machineCount, int threads, long millis) throws InterruptedException {
+        ConcurrentVendingMachine[] machines = new ConcurrentVendingMachine[machineCount];
+        for (int i = 0; i < machineCount; i++) {
+            machines[i] = new ConcurrentVendingMachine();
+        }
+        // accepted coins and dispensed items per machine, summed when a thread finishes
+        AtomicLongArray balance = new AtomicLongArray(machineCount);
+        long[] operations = new long[threads];
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] deadline = new long[1];
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            Thread worker = new Thread(() -> {
+                long[] local = new long[machineCount];
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                try {
+                    start.await();
+                    long end = deadline[0];
+                    while ((count & 1023) != 0 || System.nanoTime() - end < 0) {
+                        int index = machineCount == 1 ? 0 : random.nextInt(machineCount);
+                        ConcurrentVendingMachine machine = machines[index];
+                        if ((count & 1) == 0) {
+                            if (machine.insertCoin()) {
+                                local[index]++;
+                            }
+                        } else if (machine.pressButton()) {
+                            local[index]--;
+                        }
+                        count++;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 0; i < machineCount; i++) {
+                    if (local[i] != 0) {
+                        balance.addAndGet(i, local[i]);
+                    }
+                }
+                operations[id] = count;
+                done.countDown();
+            }, "vending-" + t);
+            worker.start();
+        }
+        deadline[0] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+
+        long total = 0;
+        for (long count : operations) {
+            total += count;
+        }
+        for (int i = 0; i < machineCount; i++) {
+            int coinInside = machines[i].getState() == VendingMachine.HAS_COIN ? 1 : 0;
+            if (balance.get(i) != coinInside) {
+                throw new IllegalStateException("Machine " + i + " lost or double-dispensed a coin");
+            }
+        }
+        return total * 1_000.0 / elapsed;
+    }
+}
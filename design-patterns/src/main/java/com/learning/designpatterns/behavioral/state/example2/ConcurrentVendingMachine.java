@@ -0,0 +1,50 @@
+package com.learning.designpatterns.behavioral.state.example2;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe VendingMachine. The current state is an AtomicInteger and every event is a
+ * compare-and-set retry loop over VendingMachine.MACHINE, so two threads can never both take
+ * the coin that is in the machine and no coin inserted by one thread is lost to another.
+ * No locks are taken.
+ *
+ * Instead of printing, insertCoin and pressButton report what happened, so callers can count
+ * coins and items.
+ */
+public class ConcurrentVendingMachine {
+    private final AtomicInteger state = new AtomicInteger(VendingMachine.NO_COIN);
+
+    /**
+     * Returns true if the coin was accepted, false if the machine already had one.
+     */
+    public boolean insertCoin() {
+        return apply(VendingMachine.INSERT_COIN) == VendingMachine.NO_COIN;
+    }
+
+    /**
+     * Returns true if an item was dispensed, false if there was no coin.
+     */
+    public boolean pressButton() {
+        return apply(VendingMachine.PRESS_BUTTON) == VendingMachine.HAS_COIN;
+    }
+
+    public int getState() {
+        return state.get();
+    }
+
+    /**
+     * Applies the event and returns the state it was applied in.
+     */
+    public int apply(int event) {
+        while (true) {
+            int current = state.get();
+            int next = VendingMachine.MACHINE.next(current, event);
+            // Events that keep the state need no write, which keeps the cache line shared
+            // between the threads reading it.
+            if (next == current || state.compareAndSet(current, next)) {
+                return current;
+            }
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -1,10 +1,9 @@
 package com.learning.designpatterns.behavioral.state.example2;
 
 public class HasCoinState implements State {
-    private VendingMachine vendingMachine;
+    static final HasCoinState INSTANCE = new HasCoinState();
 
-    public HasCoinState(VendingMachine vendingMachine) {
-        this.vendingMachine = vendingMachine;
+    private HasCoinState() {
     }
 
     @Override
@@ -15,8 +14,5 @@ public class HasCoinState implements State {
     @Override
     public void pressButton() {
         System.out.println("Item dispensed.");
-        // Change state to NoCoinState after dispensing the item
-        vendingMachine.setState(new NoCoinState(vendingMachine));
     }
 }
-
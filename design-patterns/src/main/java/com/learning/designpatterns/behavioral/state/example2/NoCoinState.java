@@ -1,16 +1,14 @@
 package com.learning.designpatterns.behavioral.state.example2;
 
 public class NoCoinState implements State {
-    private VendingMachine vendingMachine;
+    static final NoCoinState INSTANCE = new NoCoinState();
 
-    public NoCoinState(VendingMachine vendingMachine) {
-        this.vendingMachine = vendingMachine;
+    private NoCoinState() {
     }
 
     @Override
     public void insertCoin() {
         System.out.println("Coin inserted.");
-        vendingMachine.setState(new HasCoinState(vendingMachine));
     }
 
     @Override
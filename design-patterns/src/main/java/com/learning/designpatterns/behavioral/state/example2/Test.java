@@ -1,5 +1,7 @@
 package com.learning.designpatterns.behavioral.state.example2;
 
+import java.util.concurrent.ForkJoinPool;
+
 public class Test {
     public static void main(String[] args) {
         VendingMachine vendingMachine = new VendingMachine();
@@ -7,6 +9,15 @@ public class Test {
 
         vendingMachine.insertCoin(); // Output: Coin inserted.
         vendingMachine.pressButton(); // Output: Item dispensed.
+
+        // The same machine for a whole fleet at once; see VendingFleetBenchmark for the big numbers
+        VendingFleet fleet = new VendingFleet(3, 1, ForkJoinPool.commonPool());
+        int[] machineIds = {0, 1, 0, 2};
+        byte[] events = {VendingMachine.INSERT_COIN, VendingMachine.PRESS_BUTTON,
+                VendingMachine.PRESS_BUTTON, VendingMachine.INSERT_COIN};
+        fleet.apply(machineIds, events, events.length);
+        System.out.println("Fleet dispensed " + fleet.transitions(VendingMachine.HAS_COIN, VendingMachine.PRESS_BUTTON)
+                + " item(s), " + fleet.machinesIn(VendingMachine.HAS_COIN) + " machine(s) holding a coin");
     }
     
 }
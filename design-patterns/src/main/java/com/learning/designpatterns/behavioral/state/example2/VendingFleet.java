@@ -0,0 +1,224 @@
+package com.learning.designpatterns.behavioral.state.example2;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.learning.designpatterns.behavioral.state.fsm.StateMachine;
+
+/**
+ * Simulates a large fleet of vending machines without one object graph per machine. Machine
+ * states are kept in a single byte array and follow the same transition table as
+ * VendingMachine, so the NoCoinState/HasCoinState semantics are unchanged; the printed
+ * messages are replaced by counters.
+ *
+ * Machines are split into contiguous partitions. A batch of events is first grouped by
+ * partition (stable, so events for one machine keep their order) and then every partition
+ * applies its events on its own core. A partition only ever touches its own machines and
+ * counters, so no synchronisation is needed while a batch runs. The counters of all
+ * partitions live in one array with padding between partitions, so cores updating their own
+ * counters never write to the same cache line.
+ *
+ * See VendingFleetBenchmark for throughput numbers.
+ */
+public class VendingFleet {
+    // longs between two partitions' counters; 128 bytes also covers CPUs that fetch cache
+    // lines in pairs
+    private static final int PADDING = 16;
+
+    private final byte[] states;
+    private final byte[] nextState;
+    private final int eventCount;
+    private final int stateCount;
+    private final int partitions;
+    private final int partitionSize;
+    private final ForkJoinPool pool;
+    // per partition, stride longs apart: how often each (state, event) pair was seen,
+    // followed by the number of machines per state
+    private final long[] counters;
+    private final int stride;
+
+    // scratch space reused between batches
+    private int[] grouped = new int[0];
+    private final int[][] offsets;
+    private final int[] partitionStart;
+
+    public VendingFleet(int machines, int partitions, ForkJoinPool pool){
+        StateMachine<VendingMachine> machine = VendingMachine.MACHINE;
+        this.stateCount = machine.stateCount();
+        this.eventCount = machine.eventCount();
+        this.nextState = new byte[stateCount * eventCount];
+        for (int state = 0; state < stateCount; state++){
+            for (int event = 0; event < eventCount; event++){
+                nextState[state * eventCount + event] = (byte) machine.next(state, event);
+            }
+        }
+        this.states = new byte[machines];
+        this.partitions = Math.max(1, Math.min(partitions, machines));
+        this.partitionSize = (machines + this.partitions - 1) / this.partitions;
+        this.pool = pool;
+        this.stride = stateCount * eventCount + stateCount + PADDING;
+        this.counters = new long[PADDING + this.partitions * stride];
+        for (int p = 0; p < this.partitions; p++){
+            int from = p * partitionSize;
+            counters[stateCounter(p, VendingMachine.NO_COIN)] = Math.max(0, Math.min(machines, from + partitionSize) - from);
+        }
+        // every chunk's histogram row is written by its own core, so pad the rows as well
+        this.offsets = new int[this.partitions][this.partitions + 2 * PADDING];
+        this.partitionStart = new int[this.partitions + 1];
+    }
+
+    /**
+     * Applies events[i] (VendingMachine.INSERT_COIN or PRESS_BUTTON) to machine machineIds[i],
+     * for i below count. Not thread-safe: one batch at a time.
+     *
+     * @throws IllegalArgumentException if a machine id or event is out of range; the batch is
+     *                                  checked before any of it is applied
+     */
+    public void apply(int[] machineIds, byte[] events, int count){
+        if (count < 0 || count > machineIds.length || count > events.length){
+            throw new IllegalArgumentException("count " + count + " does not fit the batch");
+        }
+        if (grouped.length < count){
+            grouped = new int[count];
+        }
+        int chunk = (count + partitions - 1) / partitions;
+        pool.invoke(new Phase(0, partitions, p -> histogram(machineIds, events, p * chunk, Math.min(count, (p + 1) * chunk), offsets[p])));
+        prefixSums();
+        pool.invoke(new Phase(0, partitions, p -> scatter(machineIds, p * chunk, Math.min(count, (p + 1) * chunk), offsets[p])));
+        pool.invoke(new Phase(0, partitions, p -> run(p, machineIds, events)));
+    }
+
+    public int state(int machineId){
+        return states[machineId];
+    }
+
+    public long machinesIn(int state){
+        checkState(state);
+        long total = 0;
+        for (int p = 0; p < partitions; p++){
+            total += counters[stateCounter(p, state)];
+        }
+        return total;
+    }
+
+    /**
+     * How many times event arrived while a machine was in state, e.g. (HAS_COIN, PRESS_BUTTON)
+     * is the number of items dispensed.
+     */
+    public long transitions(int state, int event){
+        checkState(state);
+        checkEvent(event);
+        long total = 0;
+        for (int p = 0; p < partitions; p++){
+            total += counters[transitionCounter(p, state * eventCount + event)];
+        }
+        return total;
+    }
+
+    /**
+     * Also checks the chunk's machine ids and events, so a bad batch fails before any state
+     * changes.
+     */
+    private void histogram(int[] machineIds, byte[] events, int from, int to, int[] counts){
+        Arrays.fill(counts, 0, partitions, 0);
+        for (int i = from; i < to; i++){
+            int machine = machineIds[i];
+            if (machine < 0 || machine >= states.length){
+                throw new IllegalArgumentException("Unknown machine " + machine);
+            }
+            checkEvent(events[i]);
+            counts[machine / partitionSize]++;
+        }
+    }
+
+    private void checkState(int state){
+        if (state < 0 || state >= stateCount){
+            throw new IllegalArgumentException("Unknown state " + state);
+        }
+    }
+
+    private void checkEvent(int event){
+        if (event < 0 || event >= eventCount){
+            throw new IllegalArgumentException("Unknown event " + event);
+        }
+    }
+
+    /**
+     * Turns the per-chunk histograms into write offsets, partition by partition and chunk by
+     * chunk, so the grouped events keep their original order within each partition.
+     */
+    private void prefixSums(){
+        int position = 0;
+        for (int p = 0; p < partitions; p++){
+            partitionStart[p] = position;
+            for (int c = 0; c < partitions; c++){
+                int size = offsets[c][p];
+                offsets[c][p] = position;
+                position += size;
+            }
+        }
+        partitionStart[partitions] = position;
+    }
+
+    private void scatter(int[] machineIds, int from, int to, int[] cursor){
+        for (int i = from; i < to; i++){
+            grouped[cursor[machineIds[i] / partitionSize]++] = i;
+        }
+    }
+
+    private void run(int partition, int[] machineIds, byte[] events){
+        long[] counters = this.counters;
+        int transitions = transitionCounter(partition, 0);
+        int perState = stateCounter(partition, 0);
+        for (int i = partitionStart[partition], end = partitionStart[partition + 1]; i < end; i++){
+            int index = grouped[i];
+            int machine = machineIds[index];
+            int state = states[machine];
+            int key = state * eventCount + events[index];
+            int next = nextState[key];
+            counters[transitions + key]++;
+            if (next != state){
+                counters[perState + state]--;
+                counters[perState + next]++;
+                states[machine] = (byte) next;
+            }
+        }
+    }
+
+    private int transitionCounter(int partition, int key){
+        return PADDING + partition * stride + key;
+    }
+
+    private int stateCounter(int partition, int state){
+        return PADDING + partition * stride + stateCount * eventCount + state;
+    }
+
+    private interface PartitionTask {
+        void run(int partition);
+    }
+
+    private static final class Phase extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final PartitionTask task;
+
+        private Phase(int from, int to, PartitionTask task){
+            this.from = from;
+            this.to = to;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute(){
+            if (to - from == 1){
+                task.run(from);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Phase(from, middle, task), new Phase(middle, to, task));
+        }
+    }
+}
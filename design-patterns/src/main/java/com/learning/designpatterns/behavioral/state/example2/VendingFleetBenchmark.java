@@ -0,0 +1,41 @@
+package com.learning.designpatterns.behavioral.state.example2;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Throughput benchmark for VendingFleet: random events for a large fleet, applied in batches
+ * on the common pool. Run with: java ... VendingFleetBenchmark [machines] [events per batch] [batches]
+ */
+public class VendingFleetBenchmark {
+
+    public static void main(String[] args) {
+        int machines = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 4_000_000;
+        int batches = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int cores = Runtime.getRuntime().availableProcessors();
+        VendingFleet fleet = new VendingFleet(machines, cores * 4, ForkJoinPool.commonPool());
+
+        SplittableRandom random = new SplittableRandom(42);
+        int[] machineIds = new int[batchSize];
+        byte[] events = new byte[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            machineIds[i] = random.nextInt(machines);
+            events[i] = (byte) random.nextInt(2);
+        }
+        fleet.apply(machineIds, events, batchSize); // warm up
+
+        long start = System.nanoTime();
+        for (int i = 0; i < batches; i++) {
+            fleet.apply(machineIds, events, batchSize);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%d machines, %d events in %d ms (%.1f M events/s on %d cores)%n",
+                machines, (long) batchSize * batches, elapsed / 1_000_000,
+                (double) batchSize * batches * 1_000 / elapsed, cores);
+        System.out.printf("no coin: %d, has coin: %d, dispensed: %d, coins refused: %d%n",
+                fleet.machinesIn(VendingMachine.NO_COIN), fleet.machinesIn(VendingMachine.HAS_COIN),
+                fleet.transitions(VendingMachine.HAS_COIN, VendingMachine.PRESS_BUTTON),
+                fleet.transitions(VendingMachine.HAS_COIN, VendingMachine.INSERT_COIN));
+    }
+}
@@ -1,24 +1,42 @@
 package com.learning.designpatterns.behavioral.state.example2;
 
+import com.learning.designpatterns.behavioral.state.fsm.StateMachine;
+
 public class VendingMachine {
-    private State state;
+    public static final int NO_COIN = 0;
+    public static final int HAS_COIN = 1;
+
+    public static final int INSERT_COIN = 0;
+    public static final int PRESS_BUTTON = 1;
+
+    // Transitions live in the table, the state singletons only print their messages
+    public static final StateMachine<VendingMachine> MACHINE = StateMachine.<VendingMachine>builder(
+                    new String[]{"NO_COIN", "HAS_COIN"}, new String[]{"INSERT_COIN", "PRESS_BUTTON"})
+            .on(NO_COIN, INSERT_COIN, HAS_COIN, machine -> NoCoinState.INSTANCE.insertCoin())
+            .on(NO_COIN, PRESS_BUTTON, NO_COIN, machine -> NoCoinState.INSTANCE.pressButton())
+            .on(HAS_COIN, INSERT_COIN, HAS_COIN, machine -> HasCoinState.INSTANCE.insertCoin())
+            // Change state to NoCoinState after dispensing the item
+            .on(HAS_COIN, PRESS_BUTTON, NO_COIN, machine -> HasCoinState.INSTANCE.pressButton())
+            .build();
+
+    private int state;
 
     public VendingMachine() {
         // Initial state is NoCoinState
-        state = new NoCoinState(this);
+        state = NO_COIN;
     }
 
-    public void setState(State state) {
-        this.state = state;
+    public int getState() {
+        return state;
     }
 
-    // Delegate state-specific behavior to the current state object
+    // Delegate state-specific behavior to the transition table
     public void insertCoin() {
-        state.insertCoin();
+        state = MACHINE.fire(this, state, INSERT_COIN);
     }
 
     public void pressButton() {
-        state.pressButton();
+        state = MACHINE.fire(this, state, PRESS_BUTTON);
     }
 
     // Other methods...
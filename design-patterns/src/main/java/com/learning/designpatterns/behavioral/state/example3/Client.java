@@ -1,11 +1,13 @@
 package com.learning.designpatterns.behavioral.state.example3;
 
+import java.time.Duration;
+
 /**
  * Client class
  */
 public class Client {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
         TrafficLight lightSystem = new TrafficLight();
 
         lightSystem.change(); // Red - Stop!
@@ -15,5 +17,15 @@ public class Client {
         lightSystem.change(); // Red - Stop!
         lightSystem.change(); // Yellow (from Red to Green) - caution!
         lightSystem.change(); // Green - go!
+
+        // Ten thousand intersections driven by a timing wheel instead of manual change() calls
+        try (TrafficSimulation city = new TrafficSimulation(10_000, Duration.ofMillis(100),
+                Duration.ofSeconds(30), Duration.ofSeconds(3), Duration.ofSeconds(25), 4)) {
+            System.out.println("one simulated day: " + city.run(24 * 60 * 60 * 10, Double.POSITIVE_INFINITY));
+            System.out.println("20 simulated seconds at 10x: " + city.run(200, 10));
+            System.out.printf("red %d, yellow %d, green %d%n", city.lightsIn(TrafficLight.RED),
+                    city.lightsIn(TrafficLight.YELLOW_TO_GREEN) + city.lightsIn(TrafficLight.YELLOW_TO_RED),
+                    city.lightsIn(TrafficLight.GREEN));
+        }
     }
 }
@@ -1,9 +1,13 @@
 package com.learning.designpatterns.behavioral.state.example3;
 
 public class GreenState implements TrafficLightState{
+    static final GreenState INSTANCE = new GreenState();
+
+    private GreenState(){
+    }
+
     @Override
     public void changeState(TrafficLight light) {
         System.out.println("Green - go!");
-        light.setState(new YellowState());
     }
 }
@@ -1,9 +1,13 @@
 package com.learning.designpatterns.behavioral.state.example3;
 
 public class RedState implements TrafficLightState{
+    static final RedState INSTANCE = new RedState();
+
+    private RedState(){
+    }
+
     @Override
     public void changeState(TrafficLight light) {
         System.out.println("Red - Stop!");
-        light.setState(new YellowState());
     }
 }
@@ -1,29 +1,43 @@
 package com.learning.designpatterns.behavioral.state.example3;
 
+import com.learning.designpatterns.behavioral.state.fsm.StateMachine;
+
 /**
  * Context
  */
 
 public class TrafficLight {
+    public static final int RED = 0;
+    public static final int YELLOW_TO_GREEN = 1;
+    public static final int GREEN = 2;
+    public static final int YELLOW_TO_RED = 3;
+
+    public static final int CHANGE = 0;
+
+    public static final StateMachine<TrafficLight> MACHINE = StateMachine.<TrafficLight>builder(
+                    new String[]{"RED", "YELLOW_TO_GREEN", "GREEN", "YELLOW_TO_RED"}, new String[]{"CHANGE"})
+            .on(RED, CHANGE, YELLOW_TO_GREEN, RedState.INSTANCE::changeState)
+            .on(YELLOW_TO_GREEN, CHANGE, GREEN, YellowState.TO_GREEN::changeState)
+            .on(GREEN, CHANGE, YELLOW_TO_RED, GreenState.INSTANCE::changeState)
+            .on(YELLOW_TO_RED, CHANGE, RED, YellowState.TO_RED::changeState)
+            .build();
 
-    private TrafficLightState state;
-    private TrafficLightState prevState;
+    private int state;
 
     TrafficLight() {
-        this.state = new RedState();
-        this.prevState = null;
+        this.state = RED;
     }
 
-    void setState(TrafficLightState state) {
-        this.prevState = this.state;
-        this.state = state;
+    int getState() {
+        return this.state;
     }
 
-    TrafficLightState getPrevState() {
-        return this.prevState;
+    void change() {
+        this.state = MACHINE.fire(this, this.state, CHANGE);
     }
 
-    void change() {
-        this.state.changeState(this);
+    // Same transition as change() without the message, for simulations with many lights
+    int advance() {
+        return this.state = MACHINE.next(this.state, CHANGE);
     }
 }
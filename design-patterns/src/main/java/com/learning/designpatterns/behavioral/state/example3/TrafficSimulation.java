@@ -0,0 +1,252 @@
+package com.learning.designpatterns.behavioral.state.example3;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives many TrafficLight intersections off a timing wheel. Every state has a dwell time
+ * (red, yellow, green); when a light's time is up it advances through TrafficLight.MACHINE and
+ * is put back on the wheel in the slot where its next state ends. Each tick only touches the
+ * lights that change in it, no matter how many intersections there are.
+ *
+ * Intersections are split into partitions that each own their lights and their part of the
+ * wheel. Partitions never interact, so each one runs a whole batch of ticks as a single task
+ * on a small thread pool. Ticks are due at tick * tickDuration / speed after the start, and
+ * the lag is how late a batch finishes compared to its last tick.
+ */
+public class TrafficSimulation implements AutoCloseable {
+    private static final int MAX_BATCH = 256;
+
+    private final TrafficLight[] lights;
+    private final long tickNanos;
+    private final int[] dwellTicks;
+    private final Partition[] partitions;
+    private final ExecutorService pool;
+    private long tick;
+
+    public TrafficSimulation(int intersections, Duration tick, Duration red, Duration yellow, Duration green, int threads){
+        if (intersections <= 0 || threads <= 0 || tick.isNegative() || tick.isZero()){
+            throw new IllegalArgumentException("intersections, threads and tick must be positive");
+        }
+        this.tickNanos = tick.toNanos();
+        this.dwellTicks = new int[TrafficLight.MACHINE.stateCount()];
+        dwellTicks[TrafficLight.RED] = ticks(red);
+        dwellTicks[TrafficLight.YELLOW_TO_GREEN] = ticks(yellow);
+        dwellTicks[TrafficLight.GREEN] = ticks(green);
+        dwellTicks[TrafficLight.YELLOW_TO_RED] = ticks(yellow);
+        int longest = 0;
+        for (int dwell : dwellTicks){
+            longest = Math.max(longest, dwell);
+        }
+        // a light is never scheduled a full turn ahead, so a slot holds only lights due in it
+        int slots = Integer.highestOneBit(longest) << 1;
+
+        this.lights = new TrafficLight[intersections];
+        int count = Math.min(threads, intersections);
+        this.partitions = new Partition[count];
+        for (int p = 0; p < count; p++){
+            int from = (int) ((long) intersections * p / count);
+            int to = (int) ((long) intersections * (p + 1) / count);
+            partitions[p] = new Partition(from, to, slots);
+        }
+        this.pool = Executors.newFixedThreadPool(count, runnable -> {
+            Thread thread = new Thread(runnable, "traffic-simulation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs the given number of ticks. speed is simulated time per wall-clock time, so 1 is real
+     * time and Double.POSITIVE_INFINITY runs as fast as the pool allows.
+     */
+    public Report run(long ticks, double speed) throws InterruptedException {
+        if (!(speed > 0)){
+            throw new IllegalArgumentException("speed must be positive");
+        }
+        double nanosPerTick = tickNanos / speed;
+        long transitionsBefore = transitions();
+        long first = tick;
+        long last = tick + ticks;
+        long start = System.nanoTime();
+        long batches = 0;
+        long lagTotal = 0;
+        long lagMax = 0;
+        while (tick < last){
+            long due = Double.isInfinite(speed) ? last : first + (long) ((System.nanoTime() - start) / nanosPerTick);
+            if (due <= tick){
+                long wakeAt = start + (long) ((tick + 1 - first) * nanosPerTick);
+                LockSupport.parkNanos(wakeAt - System.nanoTime());
+                continue;
+            }
+            long to = Math.min(Math.min(due, last), tick + MAX_BATCH);
+            runBatch(tick, to);
+            tick = to;
+            batches++;
+            if (!Double.isInfinite(speed)){
+                long lag = Math.max(0, System.nanoTime() - (start + (long) ((to - first) * nanosPerTick)));
+                lagTotal += lag;
+                lagMax = Math.max(lagMax, lag);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        return new Report(ticks, batches, transitions() - transitionsBefore, elapsed,
+                batches == 0 ? 0 : lagTotal / batches, lagMax);
+    }
+
+    public int lightsIn(int state){
+        int count = 0;
+        for (TrafficLight light : lights){
+            if (light.getState() == state){
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public TrafficLight intersection(int index){
+        return lights[index];
+    }
+
+    public long currentTick(){
+        return tick;
+    }
+
+    @Override
+    public void close(){
+        pool.shutdownNow();
+    }
+
+    private void runBatch(long from, long to) throws InterruptedException {
+        List<Callable<Void>> tasks = new ArrayList<>(partitions.length);
+        for (Partition partition : partitions){
+            tasks.add(() -> {
+                partition.process(from, to);
+                return null;
+            });
+        }
+        for (Future<Void> future : pool.invokeAll(tasks)){
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Simulation partition failed", e.getCause());
+            }
+        }
+    }
+
+    private long transitions(){
+        long total = 0;
+        for (Partition partition : partitions){
+            total += partition.transitions;
+        }
+        return total;
+    }
+
+    private int ticks(Duration dwell){
+        return (int) Math.max(1, (dwell.toNanos() + tickNanos - 1) / tickNanos);
+    }
+
+    private final class Partition {
+        private final int[][] buckets;
+        private final int[] sizes;
+        private final int mask;
+        private long transitions;
+
+        private Partition(int from, int to, int slots){
+            this.buckets = new int[slots][8];
+            this.sizes = new int[slots];
+            this.mask = slots - 1;
+            for (int i = from; i < to; i++){
+                lights[i] = new TrafficLight();
+                // spread the first change over the red phase so the lights do not all switch together
+                schedule(i, 1 + i % dwellTicks[TrafficLight.RED]);
+            }
+        }
+
+        private void process(long from, long to){
+            for (long tick = from + 1; tick <= to; tick++){
+                int slot = (int) (tick & mask);
+                int[] due = buckets[slot];
+                int size = sizes[slot];
+                for (int i = 0; i < size; i++){
+                    int id = due[i];
+                    int state = lights[id].advance();
+                    schedule(id, tick + dwellTicks[state]);
+                }
+                transitions += size;
+                // lights are never due in the slot being drained, so nothing was added to it
+                sizes[slot] = 0;
+            }
+        }
+
+        private void schedule(int id, long tick){
+            int slot = (int) (tick & mask);
+            int size = sizes[slot];
+            if (size == buckets[slot].length){
+                buckets[slot] = Arrays.copyOf(buckets[slot], size * 2);
+            }
+            buckets[slot][size] = id;
+            sizes[slot] = size + 1;
+        }
+    }
+
+    public static final class Report {
+        private final long ticks;
+        private final long batches;
+        private final long transitions;
+        private final long elapsedNanos;
+        private final long meanLagNanos;
+        private final long maxLagNanos;
+
+        private Report(long ticks, long batches, long transitions, long elapsedNanos, long meanLagNanos, long maxLagNanos){
+            this.ticks = ticks;
+            this.batches = batches;
+            this.transitions = transitions;
+            this.elapsedNanos = elapsedNanos;
+            this.meanLagNanos = meanLagNanos;
+            this.maxLagNanos = maxLagNanos;
+        }
+
+        public long getTicks(){
+            return ticks;
+        }
+
+        public long getBatches(){
+            return batches;
+        }
+
+        public long getTransitions(){
+            return transitions;
+        }
+
+        public long getElapsedNanos(){
+            return elapsedNanos;
+        }
+
+        public long getMeanLagNanos(){
+            return meanLagNanos;
+        }
+
+        public long getMaxLagNanos(){
+            return maxLagNanos;
+        }
+
+        public double ticksPerSecond(){
+            return ticks * 1e9 / Math.max(1, elapsedNanos);
+        }
+
+        @Override
+        public String toString(){
+            return String.format("%d ticks in %d batches, %d transitions, %.0f ticks/s, lag mean %.2f ms max %.2f ms",
+                    ticks, batches, transitions, ticksPerSecond(), meanLagNanos / 1e6, maxLagNanos / 1e6);
+        }
+    }
+}
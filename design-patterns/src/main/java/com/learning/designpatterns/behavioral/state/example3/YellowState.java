@@ -1,14 +1,21 @@
 package com.learning.designpatterns.behavioral.state.example3;
 
+/**
+ * Yellow is two states in the transition table, one on the way to green and one on the way
+ * to red, so it no longer needs to look at the previous state.
+ */
 public class YellowState implements TrafficLightState{
+    static final YellowState TO_GREEN = new YellowState("Yellow (from Red to Green) - caution!");
+    static final YellowState TO_RED = new YellowState("Yellow (from Green to Red) - caution!");
+
+    private final String message;
+
+    private YellowState(String message){
+        this.message = message;
+    }
+
     @Override
     public void changeState(TrafficLight light) {
-        if (light.getPrevState() instanceof RedState) {
-            System.out.println("Yellow (from Red to Green) - caution!");
-            light.setState(new GreenState());
-        } else {
-            System.out.println("Yellow (from Green to Red) - caution!");
-            light.setState(new RedState());
-        }
+        System.out.println(message);
     }
 }
@@ -0,0 +1,9 @@
+package com.learning.designpatterns.behavioral.state.fsm;
+
+/**
+ * Side effect of a transition. Actions should be stateless so one instance can be shared by
+ * every context that uses the machine.
+ */
+public interface Action<C> {
+    void run(C context);
+}
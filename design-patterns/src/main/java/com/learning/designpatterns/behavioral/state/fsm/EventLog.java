@@ -0,0 +1,411 @@
+package com.learning.designpatterns.behavioral.state.fsm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Event-sourced state for a population of contexts that share one StateMachine. Instead of
+ * persisting every context on every transition, only the input events are written: each one is
+ * a 6 byte record [int context id][byte event + 1][byte check] in a preallocated, memory-mapped
+ * segment file, and a zero event byte marks the end of the written part. Every snapshotEvery
+ * events the states of all contexts are copied and written to a snapshot file by a background
+ * thread, which then deletes the segments and snapshots it covers; append only pays for the
+ * copy.
+ *
+ * Segments hold a fixed number of records, so the record with sequence number n is always at
+ * the same place: open loads the newest snapshot, maps the segment its sequence number falls
+ * in and replays only the records after it, reading the segments front to back. Replay stops at
+ * the first record that is out of range or fails its check byte, e.g. one torn by a crash, and
+ * the log is cut off there. States start at 0, like Phone, VendingMachine and TrafficLight do.
+ * One thread appends at a time.
+ *
+ * The segment size, context count and state count are kept in a header file; opening an
+ * existing log with different ones fails instead of misreading it.
+ *
+ * fire also runs the transition's action on a context object, so a Phone can keep its state
+ * in the log (see Phone(EventLog, int)). Actions are side effects of live events and are not
+ * run again on replay.
+ */
+public final class EventLog<C> implements AutoCloseable {
+    private static final int RECORD_SIZE = 6;
+    private static final int SNAPSHOT_MAGIC = 0x46534d53;
+    private static final int SNAPSHOT_HEADER = 20;
+    private static final int HEADER_MAGIC = 0x46534d48;
+    private static final String HEADER_FILE = "header";
+    private static final String SEGMENT_PREFIX = "events-";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    private final Path directory;
+    private final StateMachine<C> machine;
+    private final byte[] states;
+    private final int segmentSize;
+    private final int recordsPerSegment;
+    private final long snapshotEvery;
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long sequence;
+    private long snapshotSequence;
+    private long replayed;
+
+    private final ExecutorService snapshotWriter;
+    private final AtomicBoolean snapshotting = new AtomicBoolean();
+    // one snapshot file is written at a time
+    private final Object snapshotLock = new Object();
+    private volatile IOException lastSnapshotError;
+
+    private EventLog(Path directory, StateMachine<C> machine, int contexts, int segmentSize, long snapshotEvery){
+        this.directory = directory;
+        this.machine = machine;
+        this.states = new byte[contexts];
+        this.segmentSize = segmentSize;
+        this.recordsPerSegment = segmentSize / RECORD_SIZE;
+        this.snapshotEvery = snapshotEvery;
+        this.snapshotWriter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-log-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens the log in directory and rebuilds the state of every context from the newest
+     * snapshot and the events after it.
+     *
+     * @throws IllegalArgumentException if the log was created with a different segment size,
+     *                                  context count or state count
+     */
+    public static <C> EventLog<C> open(Path directory, StateMachine<C> machine, int contexts, int segmentSize,
+                                       long snapshotEvery) throws IOException {
+        if (machine.stateCount() > Byte.MAX_VALUE || machine.eventCount() >= Byte.MAX_VALUE){
+            throw new IllegalArgumentException("Too many states or events for a byte");
+        }
+        if (contexts <= 0 || segmentSize < RECORD_SIZE || snapshotEvery <= 0){
+            throw new IllegalArgumentException("contexts, segmentSize and snapshotEvery must be positive");
+        }
+        Files.createDirectories(directory);
+        EventLog<C> log = new EventLog<>(directory, machine, contexts, segmentSize, snapshotEvery);
+        log.checkHeader();
+        log.loadSnapshot();
+        boolean torn = log.replay();
+        log.truncate(torn);
+        return log;
+    }
+
+    /**
+     * Logs the event and applies it to the context; returns the context's new state. The
+     * record is only in memory until the next sync, snapshot or segment roll.
+     */
+    public synchronized int append(int context, int event) throws IOException {
+        int current = states[context];
+        int next = machine.next(current, event);
+        log(context, event, next);
+        return next;
+    }
+
+    /**
+     * Like append, but also runs the transition's action on target, the object that context
+     * stands for. The event is logged before the action runs.
+     */
+    public synchronized int fire(C target, int context, int event) throws IOException {
+        int current = states[context];
+        log(context, event, machine.next(current, event));
+        return machine.fire(target, current, event);
+    }
+
+    public synchronized int state(int context){
+        return states[context];
+    }
+
+    public int contexts(){
+        return states.length;
+    }
+
+    /**
+     * Number of events logged since the log was first created.
+     */
+    public synchronized long sequence(){
+        return sequence;
+    }
+
+    /**
+     * Number of events open had to replay on top of the snapshot.
+     */
+    public long replayed(){
+        return replayed;
+    }
+
+    public synchronized void sync(){
+        segment.force();
+    }
+
+    /**
+     * The most recent failure of a background snapshot, or null. The next snapshot retries.
+     */
+    public IOException getLastSnapshotError(){
+        return lastSnapshotError;
+    }
+
+    /**
+     * Writes the state of every context and drops the segments and snapshots it replaces.
+     */
+    public void snapshot() throws IOException {
+        byte[] copy;
+        long at;
+        synchronized (this){
+            copy = states.clone();
+            at = sequence;
+            snapshotSequence = at;
+        }
+        writeSnapshot(copy, at);
+    }
+
+    @Override
+    public void close() throws IOException {
+        snapshotWriter.shutdown();
+        try {
+            snapshotWriter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this){
+            segment.force();
+            channel.close();
+        }
+    }
+
+    // called with the lock held
+    private void log(int context, int event, int next) throws IOException {
+        if (!segment.hasRemaining()){
+            segment.force();
+            map(sequence / recordsPerSegment);
+        }
+        int position = segment.position();
+        segment.putInt(position, context);
+        segment.put(position + 4, (byte) (event + 1));
+        segment.put(position + 5, check(context, event));
+        segment.position(position + RECORD_SIZE);
+        states[context] = (byte) next;
+        sequence++;
+        if (sequence - snapshotSequence >= snapshotEvery && snapshotting.compareAndSet(false, true)){
+            byte[] copy = states.clone();
+            long at = sequence;
+            snapshotSequence = at;
+            snapshotWriter.execute(() -> {
+                try {
+                    writeSnapshot(copy, at);
+                    lastSnapshotError = null;
+                } catch (IOException e) {
+                    lastSnapshotError = e;
+                } finally {
+                    snapshotting.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes states as of sequence number at, then deletes only older snapshots and the
+     * segments before it, so a late background snapshot never deletes a newer one.
+     */
+    private void writeSnapshot(byte[] states, long at) throws IOException {
+        synchronized (snapshotLock){
+            writeSnapshotFile(states, at);
+        }
+    }
+
+    private void writeSnapshotFile(byte[] states, long at) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(SNAPSHOT_HEADER + states.length);
+        data.putInt(SNAPSHOT_MAGIC).putLong(at).putInt(states.length).putInt(machine.stateCount()).put(states).flip();
+        Path target = directory.resolve(String.format("%s%016d", SNAPSHOT_PREFIX, at));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+            while (data.hasRemaining()){
+                out.write(data);
+            }
+            out.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        long firstNeeded = at / recordsPerSegment;
+        for (Path file : list(SEGMENT_PREFIX)){
+            if (indexOf(file, SEGMENT_PREFIX) < firstNeeded){
+                Files.deleteIfExists(file);
+            }
+        }
+        for (Path file : list(SNAPSHOT_PREFIX)){
+            if (indexOf(file, SNAPSHOT_PREFIX) < at){
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Writes the header of a new log, or checks that an existing log was created with the
+     * same layout. Without it a different segment size would map sequence numbers to the
+     * wrong places.
+     */
+    private void checkHeader() throws IOException {
+        Path file = directory.resolve(HEADER_FILE);
+        if (Files.exists(file)){
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (data.remaining() != 16 || data.getInt() != HEADER_MAGIC){
+                throw new IOException("Corrupt event log header " + file);
+            }
+            int storedSegmentSize = data.getInt();
+            int storedContexts = data.getInt();
+            int storedStates = data.getInt();
+            if (storedSegmentSize != segmentSize || storedContexts != states.length
+                    || storedStates != machine.stateCount()){
+                throw new IllegalArgumentException("Event log in " + directory + " has segmentSize "
+                        + storedSegmentSize + ", " + storedContexts + " contexts and " + storedStates + " states");
+            }
+            return;
+        }
+        ByteBuffer data = ByteBuffer.allocate(16);
+        data.putInt(HEADER_MAGIC).putInt(segmentSize).putInt(states.length).putInt(machine.stateCount()).flip();
+        Path temp = directory.resolve(HEADER_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+            while (data.hasRemaining()){
+                out.write(data);
+            }
+            out.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads the newest snapshot. Older snapshots and the segments they need are already gone,
+     * so one that cannot be read is an error rather than a reason to start from scratch.
+     */
+    private void loadSnapshot() throws IOException {
+        List<Path> snapshots = list(SNAPSHOT_PREFIX);
+        if (snapshots.isEmpty()){
+            return;
+        }
+        Path file = snapshots.get(snapshots.size() - 1);
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (data.remaining() != SNAPSHOT_HEADER + states.length || data.getInt() != SNAPSHOT_MAGIC){
+            throw new IOException("Corrupt snapshot " + file);
+        }
+        long snapshotAt = data.getLong();
+        if (data.getInt() != states.length || data.getInt() != machine.stateCount()){
+            throw new IOException("Snapshot " + file + " does not match the log header");
+        }
+        data.get(states);
+        sequence = snapshotAt;
+        snapshotSequence = snapshotAt;
+    }
+
+    /**
+     * Applies the records after the snapshot. Returns true if it stopped at an invalid record
+     * rather than at the end marker.
+     */
+    private boolean replay() throws IOException {
+        while (true){
+            Path file = segmentPath(sequence / recordsPerSegment);
+            if (!Files.exists(file)){
+                return false;
+            }
+            int offset = (int) (sequence % recordsPerSegment) * RECORD_SIZE;
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)){
+                int length = (int) Math.min(in.size(), (long) recordsPerSegment * RECORD_SIZE);
+                if (offset >= length){
+                    return false;
+                }
+                MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, offset, length - offset);
+                while (buffer.remaining() >= RECORD_SIZE){
+                    int context = buffer.getInt();
+                    int event = buffer.get() - 1;
+                    byte check = buffer.get();
+                    if (event == -1){
+                        return false;
+                    }
+                    if (context < 0 || context >= states.length || event < 0 || event >= machine.eventCount()
+                            || check != check(context, event)){
+                        return true;
+                    }
+                    states[context] = (byte) machine.next(states[context], event);
+                    sequence++;
+                    replayed++;
+                }
+                if (length < recordsPerSegment * RECORD_SIZE){
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Maps the segment to append to and cuts the log off after the last replayed record:
+     * later segments are deleted and, after a torn record, the rest of the segment is zeroed,
+     * so nothing past the end marker can be replayed later.
+     */
+    private void truncate(boolean torn) throws IOException {
+        long index = sequence / recordsPerSegment;
+        for (Path file : list(SEGMENT_PREFIX)){
+            if (indexOf(file, SEGMENT_PREFIX) > index){
+                Files.delete(file);
+            }
+        }
+        map(index);
+        int position = (int) (sequence % recordsPerSegment) * RECORD_SIZE;
+        if (torn){
+            for (int i = position; i < segment.limit(); i++){
+                segment.put(i, (byte) 0);
+            }
+            segment.force();
+        }
+        segment.position(position);
+    }
+
+    // a cheap hash of the record, so a torn or stale record is very unlikely to look valid
+    private static byte check(int context, int event){
+        int hash = (context * 0x9E3779B1) ^ (event * 0x85EBCA6B) ^ 0x5A;
+        return (byte) (hash ^ (hash >>> 8) ^ (hash >>> 16) ^ (hash >>> 24));
+    }
+
+    private void map(long index) throws IOException {
+        if (channel != null){
+            channel.close();
+        }
+        channel = FileChannel.open(segmentPath(index), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+    }
+
+    private Path segmentPath(long index){
+        return directory.resolve(String.format("%s%08d.log", SEGMENT_PREFIX, index));
+    }
+
+    private List<Path> list(String prefix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(directory)){
+            entries.filter(f -> f.getFileName().toString().startsWith(prefix)
+                            && !f.getFileName().toString().endsWith(".tmp"))
+                    .sorted()
+                    .forEach(files::add);
+        }
+        return files;
+    }
+
+    private static long indexOf(Path file, String prefix){
+        String name = file.getFileName().toString();
+        int end = name.indexOf('.');
+        return Long.parseLong(name.substring(prefix.length(), end < 0 ? name.length() : end));
+    }
+}
@@ -0,0 +1,109 @@
+package com.learning.designpatterns.behavioral.state.fsm;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Rough throughput comparison between the classic State pattern, which allocates a new state
+ * object on every transition, and the table-driven StateMachine. Both model the phone from
+ * example1 with silent actions. Run with a fixed heap, e.g. -Xmx256m, and compare the numbers
+ * after the warm-up rounds.
+ */
+public class FsmBenchmark {
+    private static final int EVENTS = 50_000_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        Action<Counter> count = Counter::increment;
+        StateMachine<Counter> machine = StateMachine.<Counter>builder(
+                        new String[]{"OFF", "LOCKED", "READY"}, new String[]{"HOME", "POWER"})
+                .on(0, 0, 1, count)
+                .on(0, 1, 1, count)
+                .on(1, 0, 2, count)
+                .on(1, 1, 0, count)
+                .on(2, 0, 2, count)
+                .on(2, 1, 0, count)
+                .build();
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            Counter counter = new Counter();
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            int state = 0;
+            for (int i = 0; i < EVENTS; i++) {
+                state = machine.fire(counter, state, (i >>> 1) & 1);
+            }
+            long table = System.nanoTime() - start;
+            long tableBytes = allocatedBytes() - allocated;
+
+            ClassicPhone phone = new ClassicPhone();
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            for (int i = 0; i < EVENTS; i++) {
+                if (((i >>> 1) & 1) == 0) {
+                    phone.state.onHome();
+                } else {
+                    phone.state.onPower();
+                }
+            }
+            long classic = System.nanoTime() - start;
+            long classicBytes = allocatedBytes() - allocated;
+
+            System.out.printf("round %d: table %.1f M events/s (%d MB allocated), classic %.1f M events/s (%d MB allocated)%n",
+                    round, EVENTS * 1e3 / table, tableBytes >> 20, EVENTS * 1e3 / classic, classicBytes >> 20);
+            if (counter.count != phone.count || state < 0) {
+                throw new IllegalStateException("Implementations disagree");
+            }
+        }
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    private static final class Counter {
+        private long count;
+
+        private void increment() {
+            count++;
+        }
+    }
+
+    private static final class ClassicPhone {
+        private ClassicState state = new Off(this);
+        private long count;
+    }
+
+    private abstract static class ClassicState {
+        final ClassicPhone phone;
+
+        ClassicState(ClassicPhone phone) {
+            this.phone = phone;
+        }
+
+        abstract void onHome();
+
+        abstract void onPower();
+    }
+
+    private static final class Off extends ClassicState {
+        Off(ClassicPhone phone) { super(phone); }
+        void onHome() { phone.count++; phone.state = new Locked(phone); }
+        void onPower() { phone.count++; phone.state = new Locked(phone); }
+    }
+
+    private static final class Locked extends ClassicState {
+        Locked(ClassicPhone phone) { super(phone); }
+        void onHome() { phone.count++; phone.state = new Ready(phone); }
+        void onPower() { phone.count++; phone.state = new Off(phone); }
+    }
+
+    private static final class Ready extends ClassicState {
+        Ready(ClassicPhone phone) { super(phone); }
+        void onHome() { phone.count++; }
+        void onPower() { phone.count++; phone.state = new Off(phone); }
+    }
+}
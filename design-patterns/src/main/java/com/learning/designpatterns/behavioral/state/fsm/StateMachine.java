@@ -0,0 +1,123 @@
+package com.learning.designpatterns.behavioral.state.fsm;
+
+import java.util.Arrays;
+
+/**
+ * Table-driven finite state machine. States and events are small ints; the transitions are
+ * compiled into one int array and one action array, both indexed by state * eventCount + event,
+ * so firing an event is an array lookup and allocates nothing. The machine itself holds no
+ * per-context data: each context keeps its current state as an int and passes it to fire,
+ * which lets one machine serve any number of contexts.
+ *
+ * An event without a transition leaves the state unchanged and runs no action.
+ */
+public final class StateMachine<C> {
+    private final String[] stateNames;
+    private final String[] eventNames;
+    private final int eventCount;
+    private final int[] next;
+    private final Action<C>[] actions;
+
+    private StateMachine(String[] stateNames, String[] eventNames, int[] next, Action<C>[] actions){
+        this.stateNames = stateNames;
+        this.eventNames = eventNames;
+        this.eventCount = eventNames.length;
+        this.next = next;
+        this.actions = actions;
+    }
+
+    public static <C> Builder<C> builder(String[] stateNames, String[] eventNames){
+        return new Builder<>(stateNames.clone(), eventNames.clone());
+    }
+
+    /**
+     * Runs the transition's action and returns the new state.
+     *
+     * @throws IllegalArgumentException if state or event is out of range
+     */
+    public int fire(C context, int state, int event){
+        int index = index(state, event);
+        Action<C> action = actions[index];
+        if (action != null){
+            action.run(context);
+        }
+        return next[index];
+    }
+
+    /**
+     * The state an event leads to, without running any action.
+     */
+    public int next(int state, int event){
+        return next[index(state, event)];
+    }
+
+    public int stateCount(){
+        return stateNames.length;
+    }
+
+    public int eventCount(){
+        return eventCount;
+    }
+
+    public String stateName(int state){
+        return stateNames[state];
+    }
+
+    public String eventName(int event){
+        return eventNames[event];
+    }
+
+    // without the checks an out of range event would silently pick another state's transition
+    private int index(int state, int event){
+        if (state < 0 || state >= stateNames.length){
+            throw new IllegalArgumentException("Unknown state " + state);
+        }
+        if (event < 0 || event >= eventCount){
+            throw new IllegalArgumentException("Unknown event " + event);
+        }
+        return state * eventCount + event;
+    }
+
+    public static final class Builder<C> {
+        private final String[] stateNames;
+        private final String[] eventNames;
+        private final int[] next;
+        private final Action<C>[] actions;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Builder(String[] stateNames, String[] eventNames){
+            if (stateNames.length == 0 || eventNames.length == 0){
+                throw new IllegalArgumentException("A state machine needs at least one state and one event");
+            }
+            this.stateNames = stateNames;
+            this.eventNames = eventNames;
+            this.next = new int[stateNames.length * eventNames.length];
+            this.actions = (Action<C>[]) new Action[next.length];
+            for (int state = 0; state < stateNames.length; state++){
+                Arrays.fill(next, state * eventNames.length, (state + 1) * eventNames.length, state);
+            }
+        }
+
+        public Builder<C> on(int state, int event, int target, Action<C> action){
+            checkState(state);
+            checkState(target);
+            if (event < 0 || event >= eventNames.length){
+                throw new IllegalArgumentException("Unknown event " + event);
+            }
+            int index = state * eventNames.length + event;
+            next[index] = target;
+            actions[index] = action;
+            return this;
+        }
+
+        public StateMachine<C> build(){
+            return new StateMachine<>(stateNames, eventNames, next.clone(), actions.clone());
+        }
+
+        private void checkState(int state){
+            if (state < 0 || state >= stateNames.length){
+                throw new IllegalArgumentException("Unknown state " + state);
+            }
+        }
+    }
+}
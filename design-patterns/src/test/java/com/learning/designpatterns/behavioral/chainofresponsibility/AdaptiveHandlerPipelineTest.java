@@ -0,0 +1,70 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveHandlerPipelineTest {
+
+    @Test
+    void zeroReorderIntervalIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AdaptiveHandlerPipeline(0, new Check(true)));
+    }
+
+    @Test
+    void stagesMeasuredAfterARejectionDoNotCountAsRealCalls() {
+        Check rejectAll = new Check(false);
+        Check passAll = new Check(true);
+        AdaptiveHandlerPipeline pipeline = new AdaptiveHandlerPipeline(4, rejectAll, passAll);
+        HandlerMetrics metrics = new HandlerMetrics();
+        pipeline.instrument(metrics);
+
+        for (int i = 0; i < 2_000; i++) {
+            assertEquals(0, pipeline.run("user" + i, "secret"));
+        }
+
+        // sampled requests ran the second stage to measure it, but no request really reached it
+        assertTrue(passAll.calls > 0);
+        assertNull(metrics.snapshot().get("Check#2"));
+        assertEquals(2_000, metrics.snapshot().get("Check").getRejected());
+    }
+
+    @Test
+    void stagesThatMustRunAfterARejectedStageAreNotMeasured() {
+        Check userExists = new Check(false);
+        Check password = new Check(true);
+        Check role = new Check(true);
+        Check independent = new Check(true);
+        AdaptiveHandlerPipeline pipeline = new AdaptiveHandlerPipeline(4, userExists, password, role, independent)
+                .mustRunBefore(userExists, password)
+                .mustRunBefore(password, role);
+
+        for (int i = 0; i < 2_000; i++) {
+            assertEquals(0, pipeline.run("user" + i, "secret"));
+        }
+
+        // role depends on userExists only through password, and is skipped as well
+        assertEquals(0, password.calls);
+        assertEquals(0, role.calls);
+        assertTrue(independent.calls > 0);
+    }
+
+    private static final class Check extends BaseHandler implements Reorderable {
+        private final boolean passes;
+        private volatile int calls;
+
+        private Check(boolean passes) {
+            this.passes = passes;
+        }
+
+        @Override
+        public boolean check(String username, String password) {
+            calls++;
+            return passes;
+        }
+    }
+}
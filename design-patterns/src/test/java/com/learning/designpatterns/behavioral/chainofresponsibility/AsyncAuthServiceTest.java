@@ -0,0 +1,149 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+class AsyncAuthServiceTest {
+
+    @Test
+    void timedOutHandlerIsInterrupted() throws Exception {
+        SlowCheck slow = new SlowCheck();
+        AsyncAuthService service = new AsyncAuthService(Executors.newCachedThreadPool())
+                .then(slow, Duration.ofMillis(50));
+
+        AuthResult result = service.login("admin", "admin").get(5, TimeUnit.SECONDS);
+
+        assertTrue(result.isTimedOut());
+        assertTrue(slow.interrupted.await(5, TimeUnit.SECONDS));
+        service.shutdown();
+    }
+
+    @Test
+    void firstRejectionDecidesTheStageAndStopsTheOthers() throws Exception {
+        SlowCheck slow = new SlowCheck();
+        FixedCheck reject = new FixedCheck(false);
+        AsyncAuthService service = new AsyncAuthService(Executors.newCachedThreadPool())
+                .then(slow, Duration.ofSeconds(30))
+                .alongside(reject, Duration.ofSeconds(30));
+
+        AuthResult result = service.login("admin", "admin").get(5, TimeUnit.SECONDS);
+
+        assertSame(reject, result.getRejectedBy());
+        assertFalse(result.isTimedOut());
+        assertTrue(slow.interrupted.await(5, TimeUnit.SECONDS));
+        service.shutdown();
+    }
+
+    @Test
+    void handlerExceptionFailsTheLoginInsteadOfRejectingIt() {
+        AsyncAuthService service = new AsyncAuthService(Executors.newCachedThreadPool())
+                .then(new FixedCheck(true) {
+                    @Override
+                    public boolean check(String username, String password) {
+                        throw new IllegalStateException("bug");
+                    }
+                }, Duration.ofSeconds(5));
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> service.login("admin", "admin").get(5, TimeUnit.SECONDS));
+
+        assertEquals(IllegalStateException.class, failure.getCause().getClass());
+        service.shutdown();
+    }
+
+    @Test
+    void passwordAndRoleChecksRunConcurrently() throws Exception {
+        // each check waits until the other has started, so they only pass when run together
+        CyclicBarrier bothStarted = new CyclicBarrier(2);
+        Database db = new Database();
+        AsyncAuthService service = new AsyncAuthService(Executors.newCachedThreadPool())
+                .then(new PasswordVerificationHandler(db) {
+                    @Override
+                    public boolean check(String username, String password) {
+                        return await(bothStarted) && super.check(username, password);
+                    }
+                }, Duration.ofSeconds(5))
+                .alongside(new RoleVerificationHandler() {
+                    @Override
+                    public boolean check(String username, String password) {
+                        return await(bothStarted) && super.check(username, password);
+                    }
+                }, Duration.ofSeconds(5));
+
+        assertTrue(service.login("admin", "admin").get(10, TimeUnit.SECONDS).isAuthenticated());
+        service.shutdown();
+    }
+
+    @Test
+    void timeQueuedForAThreadDoesNotCountAgainstTheTimeout() throws Exception {
+        // one thread: the second handler waits for the first before it starts
+        AsyncAuthService service = new AsyncAuthService(Executors.newSingleThreadExecutor())
+                .then(new FixedCheck(true) {
+                    @Override
+                    public boolean check(String username, String password) {
+                        try {
+                            Thread.sleep(300);
+                        } catch (InterruptedException e) {
+                            return false;
+                        }
+                        return true;
+                    }
+                }, Duration.ofSeconds(5))
+                .alongside(new FixedCheck(true), Duration.ofMillis(100));
+
+        AuthResult result = service.login("admin", "admin").get(5, TimeUnit.SECONDS);
+
+        assertTrue(result.isAuthenticated());
+        service.shutdown();
+    }
+
+    private static boolean await(CyclicBarrier barrier) {
+        try {
+            barrier.await(5, TimeUnit.SECONDS);
+            return true;
+        } catch (InterruptedException | BrokenBarrierException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    private static class FixedCheck extends BaseHandler implements Reorderable {
+        private final boolean passes;
+
+        private FixedCheck(boolean passes) {
+            this.passes = passes;
+        }
+
+        @Override
+        public boolean check(String username, String password) {
+            return passes;
+        }
+    }
+
+    private static final class SlowCheck extends BaseHandler implements Reorderable {
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+
+        @Override
+        public boolean check(String username, String password) {
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class AuthServiceTest {
+
+    @Test
+    void authenticateRunsEachStageOnceAndReportsTheRejectingStage() {
+        CountingHandler user = new CountingHandler(true);
+        CountingHandler password = new CountingHandler(false);
+        CountingHandler role = new CountingHandler(true);
+        AuthService service = new AuthService(HandlerPipeline.of(user, password, role));
+
+        AuthResult result = service.authenticate("admin", "wrong");
+
+        assertFalse(result.isAuthenticated());
+        assertSame(password, result.getRejectedBy());
+        assertEquals(1, user.calls);
+        assertEquals(1, password.calls);
+        assertEquals(0, role.calls);
+    }
+
+    @Test
+    void successfulLoginHasNoRejectingStage() {
+        AuthService service = new AuthService(HandlerPipeline.of(new CountingHandler(true)));
+
+        AuthResult result = service.authenticate("admin", "admin");
+
+        assertTrue(result.isAuthenticated());
+        assertNull(result.getRejectedBy());
+    }
+
+    private static final class CountingHandler extends BaseHandler {
+        private final boolean passes;
+        private int calls;
+
+        private CountingHandler(boolean passes) {
+            this.passes = passes;
+        }
+
+        @Override
+        public boolean check(String username, String password) {
+            calls++;
+            return passes;
+        }
+    }
+}
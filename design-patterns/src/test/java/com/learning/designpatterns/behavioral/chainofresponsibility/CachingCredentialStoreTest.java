@@ -0,0 +1,72 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class CachingCredentialStoreTest {
+
+    @Test
+    void oldPasswordIsNotCachedAgainByALookupThatRacedWithTheChange() throws Exception {
+        StripedCredentialStore real = new StripedCredentialStore(1, 8);
+        real.put("user", "old");
+        CountDownLatch verified = new CountDownLatch(1);
+        CountDownLatch changed = new CountDownLatch(1);
+        // lets the old password pass the real store, then holds the lookup until the change is done
+        StripedCredentialStore slow = new StripedCredentialStore(1, 8) {
+            @Override
+            public boolean verify(String username, String password) {
+                boolean valid = real.verify(username, password);
+                verified.countDown();
+                await(changed);
+                return valid;
+            }
+
+            @Override
+            public void put(String username, String password) {
+                real.put(username, password);
+            }
+        };
+        CachingCredentialStore cache = new CachingCredentialStore(slow, 100, 1, TimeUnit.HOURS);
+
+        CompletableFuture<Boolean> racingLogin = CompletableFuture.supplyAsync(() -> cache.verify("user", "old"));
+        verified.await();
+        cache.put("user", "new");
+        changed.countDown();
+
+        assertTrue(racingLogin.get(10, TimeUnit.SECONDS));
+        assertFalse(cache.verify("user", "old"));
+        assertTrue(cache.verify("user", "new"));
+    }
+
+    @Test
+    void staysWithinMaxEntriesAndKeepsHotEntries() {
+        CachingCredentialStore cache = new CachingCredentialStore(new StripedCredentialStore(1, 8), 1000, 1, TimeUnit.HOURS);
+        cache.contains("hot");
+
+        for (int i = 0; i < 20_000; i++) {
+            cache.contains("unknown" + i);
+            cache.contains("hot");
+        }
+
+        assertEquals(1000, cache.cachedUsers());
+        assertEquals(19_001, cache.getEvictions());
+        // every lookup of the hot user after the first was a hit
+        assertEquals(20_001, cache.getMisses());
+        assertEquals(20_000, cache.getHits());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class HandlerMetricsTest {
+
+    @Test
+    void handlersOfTheSameClassAreTrackedSeparately() {
+        HandlerMetrics metrics = new HandlerMetrics();
+        HandlerPipeline pipeline = HandlerPipeline.of(new RoleVerificationHandler(), new RoleVerificationHandler())
+                .instrument(metrics);
+
+        pipeline.run("admin", "admin");
+        pipeline.run("user", "user");
+
+        Map<String, HandlerMetrics.Snapshot> snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.size());
+        assertEquals(2, snapshot.get("RoleVerificationHandler").getCalls());
+        assertEquals(2, snapshot.get("RoleVerificationHandler#2").getCalls());
+    }
+}
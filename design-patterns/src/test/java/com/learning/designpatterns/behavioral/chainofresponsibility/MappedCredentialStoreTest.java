@@ -0,0 +1,70 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedCredentialStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void passwordChangesWorkOnTopOfTheMappedTable() throws IOException {
+        Path table = directory.resolve("users.tbl");
+        MappedCredentialStore.write(table, users(100));
+        Database database = new Database(MappedCredentialStore.open(table));
+
+        database.updatePassword("user7", "changed");
+        database.updatePassword("newcomer", "welcome");
+
+        assertTrue(database.isValidPassword("user7", "changed"));
+        assertFalse(database.isValidPassword("user7", "secret"));
+        assertTrue(database.isValidUser("newcomer"));
+        assertEquals(101, database.getCredentialStore().size());
+    }
+
+    @Test
+    void failedWriteLeavesNoTemporaryFile() throws IOException {
+        StripedCredentialStore source = users(3);
+        source.putHashed("x".repeat(100), PasswordHasher.newSalt(), new byte[PasswordHasher.HASH_LENGTH]);
+        Path table = directory.resolve("users.tbl");
+
+        assertThrows(IllegalArgumentException.class, () -> MappedCredentialStore.write(table, source));
+
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void headerClaimingMoreSlotsThanTheFileHoldsIsRejected() throws IOException {
+        Path table = directory.resolve("users.tbl");
+        MappedCredentialStore.write(table, users(10));
+        try (FileChannel channel = FileChannel.open(table, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, 1 << 20), 8);
+        }
+
+        assertThrows(IOException.class, () -> MappedCredentialStore.open(table));
+    }
+
+    private static StripedCredentialStore users(int count) {
+        StripedCredentialStore store = new StripedCredentialStore(4, count);
+        byte[] salt = PasswordHasher.newSalt();
+        byte[] hash = PasswordHasher.hash(salt, "secret");
+        for (int i = 0; i < count; i++) {
+            store.putHashed("user" + i, salt, hash);
+        }
+        return store;
+    }
+}
@@ -0,0 +1,42 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+class RateLimitHandlerTest {
+
+    @Test
+    void floodOfDistinctUsernamesStaysWithinMaxKeys() {
+        RateLimitHandler limiter = new RateLimitHandler(5, 1, 1_000, null);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 200_000; i++) {
+            limiter.check("user" + i, "secret");
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(1_000, limiter.trackedKeys());
+        // a full scan per new key took minutes for this many keys
+        assertTrue(millis < 10_000, "took " + millis + " ms");
+    }
+
+    @Test
+    void rejectionForTheUserDoesNotUseUpTheSourceBudget() {
+        AtomicReference<String> source = new AtomicReference<>("10.0.0.1");
+        RateLimitHandler limiter = new RateLimitHandler(2, 1, 100, source::get);
+        assertTrue(limiter.check("alice", "a"));
+        assertTrue(limiter.check("alice", "b"));
+
+        source.set("10.0.0.2");
+        assertFalse(limiter.check("alice", "c"));
+        assertFalse(limiter.check("alice", "d"));
+
+        assertTrue(limiter.check("bob", "e"));
+        assertTrue(limiter.check("bob", "f"));
+    }
+}
@@ -0,0 +1,39 @@
+package com.learning.designpatterns.behavioral.chainofresponsibility;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import org.junit.jupiter.api.Test;
+
+class StripedCredentialStoreTest {
+
+    @Test
+    void bulkLookupsMatchSingleLookups() {
+        StripedCredentialStore store = new StripedCredentialStore(8, 64);
+        for (int i = 0; i < 5; i++) {
+            store.put("user" + i, "secret" + i);
+        }
+        String[] usernames = new String[12];
+        String[] passwords = new String[12];
+        boolean[] expectedUsers = new boolean[12];
+        boolean[] expectedPasswords = new boolean[12];
+        boolean[] found = new boolean[12];
+        for (int i = 0; i < 12; i++) {
+            usernames[i] = "user" + (i % 8);
+            passwords[i] = i % 3 == 0 ? "wrong" : "secret" + (i % 8);
+            expectedUsers[i] = store.contains(usernames[i]);
+            expectedPasswords[i] = i % 7 != 0 && store.verify(usernames[i], passwords[i]);
+            found[i] = true;
+        }
+        boolean[] valid = new boolean[12];
+        for (int i = 0; i < 12; i++) {
+            // entries already rejected by an earlier stage stay rejected
+            valid[i] = i % 7 != 0;
+        }
+
+        store.contains(usernames, found);
+        store.verify(usernames, passwords, valid);
+
+        assertArrayEquals(expectedUsers, found);
+        assertArrayEquals(expectedPasswords, valid);
+    }
+}
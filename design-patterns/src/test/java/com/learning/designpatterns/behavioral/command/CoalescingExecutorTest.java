@@ -0,0 +1,115 @@
+package com.learning.designpatterns.behavioral.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class CoalescingExecutorTest {
+
+    @Test
+    void onlyTheLatestCommandPerDeviceRuns() {
+        List<String> log = new ArrayList<>();
+        Television tv = new RecordingTelevision(1, log);
+        CoalescingExecutor executor = new CoalescingExecutor();
+
+        executor.submit(new OnCommand(tv));
+        executor.submit(new OffCommand(tv));
+        executor.submit(new OnCommand(tv));
+
+        assertEquals(1, executor.flush());
+        assertEquals(List.of("on 1"), log);
+        assertEquals(3, executor.getSubmittedCount());
+        assertEquals(1, executor.getExecutedCount());
+    }
+
+    @Test
+    void commandsThatLeaveTheDeviceAsItIsAreDropped() {
+        List<String> log = new ArrayList<>();
+        Television tv = new RecordingTelevision(1, log);
+        CoalescingExecutor executor = new CoalescingExecutor();
+
+        executor.submit(new OnCommand(tv));
+        executor.submit(new OffCommand(tv));
+        executor.submit(new OffCommand(tv));
+
+        assertEquals(0, executor.flush());
+        assertFalse(tv.isOn());
+        assertTrue(log.isEmpty());
+    }
+
+    @Test
+    void otherCommandsKeepTheirPlace() {
+        List<String> log = new ArrayList<>();
+        Television first = new RecordingTelevision(1, log);
+        Television second = new RecordingTelevision(2, log);
+        CoalescingExecutor executor = new CoalescingExecutor();
+
+        executor.submit(new OnCommand(first));
+        executor.submit(() -> log.add("other"));
+        executor.submit(new OffCommand(first));
+        executor.submit(new OnCommand(second));
+        // first moves behind second, to the place of its latest command
+        executor.submit(new OnCommand(first));
+        executor.submit(new OffCommand(first));
+
+        assertEquals(4, executor.flush());
+        assertEquals(List.of("on 1", "other", "on 2", "off 1"), log);
+    }
+
+    @Test
+    void flushDrainsEverythingSubmittedBeforeIt() throws InterruptedException {
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        Television[] tvs = new Television[100];
+        for (int i = 0; i < tvs.length; i++) {
+            tvs[i] = new RecordingTelevision(i, log);
+        }
+        CoalescingExecutor executor = new CoalescingExecutor();
+        Thread[] submitters = new Thread[4];
+        for (int t = 0; t < submitters.length; t++) {
+            submitters[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    executor.submit(new OnCommand(tvs[i % tvs.length]));
+                }
+            });
+            submitters[t].start();
+        }
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+
+        assertEquals(tvs.length, executor.flush());
+        assertEquals(0, executor.flush());
+        assertEquals(40_000, executor.getSubmittedCount());
+        assertEquals(tvs.length, executor.getExecutedCount());
+        for (Television tv : tvs) {
+            assertTrue(tv.isOn());
+        }
+    }
+
+    private static final class RecordingTelevision extends Television {
+        private final List<String> log;
+
+        private RecordingTelevision(int id, List<String> log) {
+            super(id);
+            this.log = log;
+        }
+
+        @Override
+        public void on() {
+            super.on();
+            log.add("on " + getId());
+        }
+
+        @Override
+        public void off() {
+            super.off();
+            log.add("off " + getId());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.learning.designpatterns.behavioral.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+
+class CommandBusTest {
+
+    @Test
+    void rejectsCommandsAfterClose() throws InterruptedException {
+        CommandBus bus = new CommandBus(8, CommandBus.ProducerType.SINGLE, WaitStrategy.YIELDING);
+        bus.close();
+
+        assertFalse(bus.offer(() -> { }));
+        assertThrows(IllegalStateException.class, () -> bus.publish(() -> { }));
+    }
+
+    @Test
+    void errorThrownByACommandDoesNotStopTheConsumer() throws InterruptedException {
+        LongAdder ran = new LongAdder();
+        CommandBus bus = new CommandBus(8, CommandBus.ProducerType.SINGLE, WaitStrategy.YIELDING);
+        bus.publish(() -> {
+            throw new StackOverflowError();
+        });
+        for (int i = 0; i < 100; i++){
+            bus.publish(ran::increment);
+        }
+        bus.close();
+
+        assertEquals(100, ran.sum());
+        assertEquals(1, bus.getFailedCount());
+    }
+
+    @Test
+    void everyAcceptedCommandRunsWhenCloseRacesProducers() throws InterruptedException {
+        for (int round = 0; round < 20; round++){
+            CommandBus bus = new CommandBus(64, CommandBus.ProducerType.MULTI, WaitStrategy.YIELDING);
+            AtomicLong accepted = new AtomicLong();
+            LongAdder ran = new LongAdder();
+            CountDownLatch started = new CountDownLatch(4);
+            List<Thread> producers = new ArrayList<>();
+            for (int p = 0; p < 4; p++){
+                Thread producer = new Thread(() -> {
+                    started.countDown();
+                    for (int i = 0; i < 100_000; i++){
+                        if (bus.offer(ran::increment)){
+                            accepted.incrementAndGet();
+                        }
+                    }
+                });
+                producer.start();
+                producers.add(producer);
+            }
+            started.await();
+            bus.close();
+            for (Thread producer : producers){
+                producer.join();
+            }
+
+            assertEquals(accepted.get(), ran.sum());
+            assertTrue(bus.getExecutedCount() == ran.sum());
+        }
+    }
+}
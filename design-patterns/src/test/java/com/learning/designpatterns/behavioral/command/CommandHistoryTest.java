@@ -0,0 +1,142 @@
+package com.learning.designpatterns.behavioral.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CommandHistoryTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void undoUsesTheStateLeftByQueuedCommands() throws InterruptedException {
+        Television tv = new Television(0);
+        CountDownLatch release = new CountDownLatch(1);
+        CommandBus bus = new CommandBus(16, CommandBus.ProducerType.SINGLE, WaitStrategy.YIELDING);
+        bus.publish(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        RemoteControl remote = new RemoteControl(bus);
+        remote.setHistory(new CommandHistory(10, id -> tv));
+        remote.setCommand(new OnCommand(tv));
+        remote.pressButton();
+        remote.setCommand(new OffCommand(tv));
+        remote.pressButton();
+
+        // neither press has run yet, but undoing the off must still turn the TV back on
+        assertTrue(remote.undo());
+        release.countDown();
+        bus.close();
+
+        assertTrue(tv.isOn());
+    }
+
+    @Test
+    void undoAndRedoAreJournaled() throws IOException {
+        Television tv = new Television(0);
+        try (CommandJournal journal = CommandJournal.open(directory, 4096)) {
+            RemoteControl remote = new RemoteControl();
+            remote.setJournal(journal);
+            remote.setHistory(new CommandHistory(10, id -> tv));
+            remote.setCommand(new OnCommand(tv));
+            remote.pressButton();
+            assertTrue(remote.undo());
+            assertTrue(remote.redo());
+            assertTrue(remote.undo());
+            assertFalse(remote.undo());
+        }
+        Television recovered = new Television(0);
+
+        assertEquals(4, CommandJournal.replay(directory, id -> recovered));
+        assertFalse(tv.isOn());
+        assertEquals(tv.isOn(), recovered.isOn());
+    }
+
+    @Test
+    void oldestEntriesAreForgottenWhenFull() {
+        Television tv = new Television(0);
+        CommandHistory history = new CommandHistory(2, id -> tv);
+        for (int i = 0; i < 5; i++) {
+            history.record(new OnCommand(tv));
+        }
+
+        assertEquals(2, history.undoableCount());
+        history.undo();
+        history.undo();
+        assertNull(history.undo());
+        assertEquals(2, history.redoableCount());
+    }
+
+    @Test
+    void onlyDevicesWithEntriesInTheRingAreTracked() {
+        Television[] tvs = new Television[10_000];
+        for (int i = 0; i < tvs.length; i++) {
+            tvs[i] = new Television(i);
+        }
+        CommandHistory history = new CommandHistory(8, id -> tvs[id]);
+        for (Television tv : tvs) {
+            history.record(new OnCommand(tv));
+        }
+        assertEquals(8, history.trackedDevices());
+
+        for (int i = 0; i < 8; i++) {
+            history.undo();
+        }
+        history.record(new OffCommand(tvs[0]));
+        assertEquals(1, history.trackedDevices());
+    }
+
+    @Test
+    void undoRestoresThePreviousStateAcrossManyDevices() {
+        Television[] tvs = new Television[1_000];
+        for (int i = 0; i < tvs.length; i++) {
+            tvs[i] = new Television(i);
+        }
+        CommandHistory history = new CommandHistory(64, id -> tvs[id]);
+        // device id and state before each undoable command, newest first
+        Deque<int[]> undoable = new ArrayDeque<>();
+        Deque<int[]> redoable = new ArrayDeque<>();
+        SplittableRandom random = new SplittableRandom(7);
+        for (int step = 0; step < 50_000; step++) {
+            int action = random.nextInt(4);
+            if (action == 0 && !undoable.isEmpty()) {
+                int[] last = undoable.pop();
+                history.undo().execute();
+                assertEquals(last[1] == 1, tvs[last[0]].isOn());
+                redoable.push(last);
+            } else if (action == 1 && !redoable.isEmpty()) {
+                int[] next = redoable.pop();
+                history.redo().execute();
+                undoable.push(next);
+            } else {
+                Television tv = tvs[random.nextInt(tvs.length)];
+                undoable.push(new int[]{tv.getId(), tv.isOn() ? 1 : 0});
+                redoable.clear();
+                if (undoable.size() > 64) {
+                    undoable.removeLast();
+                }
+                Command command = random.nextBoolean() ? new OnCommand(tv) : new OffCommand(tv);
+                history.record(command);
+                command.execute();
+            }
+            assertEquals(undoable.size(), history.undoableCount());
+            assertEquals(redoable.size(), history.redoableCount());
+        }
+    }
+}
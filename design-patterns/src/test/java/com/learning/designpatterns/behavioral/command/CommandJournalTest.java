@@ -0,0 +1,127 @@
+package com.learning.designpatterns.behavioral.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CommandJournalTest {
+
+    // a 16 byte header and four 8 byte records
+    private static final int SEGMENT_OF_FOUR = 48;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void segmentSmallerThanARecordIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> CommandJournal.open(directory, 4));
+    }
+
+    @Test
+    void sequenceNumbersContinueAfterReopening() throws IOException {
+        Television tv = new Television(0);
+        try (CommandJournal journal = CommandJournal.open(directory, SEGMENT_OF_FOUR)) {
+            for (int i = 0; i < 6; i++) {
+                assertEquals(i + 1, journal.append(new OnCommand(tv)));
+            }
+        }
+        try (CommandJournal journal = CommandJournal.open(directory, SEGMENT_OF_FOUR)) {
+            assertEquals(7, journal.append(new OffCommand(tv)));
+        }
+        assertEquals(7, CommandJournal.replay(directory, id -> new Television(id)));
+    }
+
+    @Test
+    void retiredSegmentsAreNotReplayed() throws IOException {
+        Television[] devices = {new Television(0), new Television(1)};
+        try (CommandJournal journal = CommandJournal.open(directory, SEGMENT_OF_FOUR)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append(new OnCommand(devices[i % 2]));
+            }
+            // three segments of 4, 4 and 2 records; the last one is still in use
+            assertEquals(0, journal.retire(3));
+            assertEquals(1, journal.retire(5));
+            assertEquals(1, journal.retire(10));
+            assertEquals(0, journal.retire(10));
+        }
+        assertEquals(1, segmentCount());
+        assertEquals(2, CommandJournal.replay(directory, id -> new Television(id)));
+    }
+
+    @Test
+    void journaledPressesAreReplayedAfterSync() throws IOException {
+        Television tv = new Television(3);
+        try (CommandJournal journal = CommandJournal.open(directory, 4096)) {
+            RemoteControl remote = new RemoteControl();
+            remote.setJournal(journal);
+            remote.setCommand(new OnCommand(tv));
+            for (int i = 0; i < 100; i++) {
+                remote.pressButton();
+            }
+            remote.syncJournal();
+        }
+        Television recovered = new Television(3);
+        assertEquals(100, CommandJournal.replay(directory, id -> recovered));
+        assertTrue(recovered.isOn());
+    }
+
+    @Test
+    void replayAndOpenStopAtATornRecord() throws IOException {
+        Television tv = new Television(1);
+        try (CommandJournal journal = CommandJournal.open(directory, 4096)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append(i % 2 == 0 ? new OnCommand(tv) : new OffCommand(tv));
+            }
+        }
+        // flip the opcode of record 6 without fixing its checksum
+        Path segment = directory.resolve("commands-0000000000000001.log");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{CommandCodec.OFF}), 16 + 6 * 8 + 4);
+        }
+
+        Television replayed = new Television(1);
+        assertEquals(6, CommandJournal.replay(directory, id -> replayed));
+        assertFalse(replayed.isOn());
+        try (CommandJournal journal = CommandJournal.open(directory, 4096)) {
+            assertEquals(7, journal.append(new OnCommand(tv)));
+        }
+        // records 7 to 9 were cleared, so they cannot come back after the new one
+        assertEquals(7, CommandJournal.replay(directory, id -> replayed));
+    }
+
+    @Test
+    void reopeningWithAnotherSegmentSizeKeepsReadingOldSegments() throws IOException {
+        Television tv = new Television(0);
+        try (CommandJournal journal = CommandJournal.open(directory, SEGMENT_OF_FOUR)) {
+            for (int i = 0; i < 6; i++) {
+                journal.append(new OnCommand(tv));
+            }
+        }
+        try (CommandJournal journal = CommandJournal.open(directory, 4096)) {
+            // the second segment still has room for two records of its own size
+            assertEquals(7, journal.append(new OffCommand(tv)));
+            assertEquals(8, journal.append(new OffCommand(tv)));
+            assertEquals(9, journal.append(new OffCommand(tv)));
+        }
+        assertEquals(3, segmentCount());
+        assertEquals(9, CommandJournal.replay(directory, id -> new Television(id)));
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
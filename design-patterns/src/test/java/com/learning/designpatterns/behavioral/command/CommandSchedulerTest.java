@@ -0,0 +1,87 @@
+package com.learning.designpatterns.behavioral.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class CommandSchedulerTest {
+
+    // one tick is an hour, so the clock never moves on its own and advanceTo drives the wheel
+    private final CommandScheduler scheduler = new CommandScheduler(1, TimeUnit.HOURS,
+            commands -> commands.forEach(Command::execute));
+    private final List<String> fired = new ArrayList<>();
+    private long tick;
+
+    @Test
+    void timersOnSlotBoundariesFireOnTime(){
+        for (long delay : new long[]{63, 64, 65, 128, 4095, 4096, 4097, 8192}){
+            scheduler.schedule(record("t" + delay), delay, TimeUnit.HOURS);
+        }
+        runTo(9_000);
+
+        assertEquals(List.of("t63@63", "t64@64", "t65@65", "t128@128", "t4095@4095", "t4096@4096",
+                "t4097@4097", "t8192@8192"), fired);
+        assertEquals(0, scheduler.pendingCount());
+    }
+
+    @Test
+    void timersCascadeThroughLevelOneAndTwo(){
+        scheduler.schedule(record("a"), 100, TimeUnit.HOURS);
+        scheduler.schedule(record("b"), 5_000, TimeUnit.HOURS);
+        scheduler.schedule(record("c"), 70_001, TimeUnit.HOURS);
+        scheduler.schedule(record("d"), 262_143, TimeUnit.HOURS);
+        scheduler.schedule(record("e"), 262_144, TimeUnit.HOURS);
+        runTo(270_000);
+
+        assertEquals(List.of("a@100", "b@5000", "c@70001", "d@262143", "e@262144"), fired);
+    }
+
+    @Test
+    void cancelledTimersDoNotFire(){
+        CommandScheduler.Timer kept = scheduler.schedule(record("kept"), 10, TimeUnit.HOURS);
+        CommandScheduler.Timer cancelled = scheduler.schedule(record("cancelled"), 10, TimeUnit.HOURS);
+        CommandScheduler.Timer far = scheduler.schedule(record("far"), 5_000, TimeUnit.HOURS);
+        assertEquals(3, scheduler.pendingCount());
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        runTo(4_200);
+        // far has been cascaded down to level 1 by now
+        assertTrue(far.cancel());
+        runTo(6_000);
+
+        assertEquals(List.of("kept@10"), fired);
+        assertFalse(kept.cancel());
+        assertEquals(0, scheduler.pendingCount());
+    }
+
+    @Test
+    void periodicTimersKeepTheirRate(){
+        CommandScheduler.Timer everyLevel = scheduler.scheduleAtFixedRate(record("p"), 64, 64, TimeUnit.HOURS);
+        scheduler.scheduleAtFixedRate(record("q"), 1, 100, TimeUnit.HOURS);
+        runTo(300);
+        assertTrue(everyLevel.cancel());
+        runTo(500);
+
+        assertEquals(List.of("q@1", "p@64", "q@101", "p@128", "p@192", "q@201", "p@256", "q@301", "q@401"),
+                fired);
+        assertEquals(1, scheduler.pendingCount());
+    }
+
+    private Command record(String name){
+        return () -> fired.add(name + "@" + tick);
+    }
+
+    private void runTo(long end){
+        while (tick < end){
+            tick++;
+            scheduler.advanceTo(tick);
+        }
+    }
+}
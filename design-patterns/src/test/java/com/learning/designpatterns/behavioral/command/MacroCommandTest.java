@@ -0,0 +1,104 @@
+package com.learning.designpatterns.behavioral.command;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+
+class MacroCommandTest {
+
+    @Test
+    void directExecutorDoesNotRecurse() {
+        LongAdder ran = new LongAdder();
+        MacroCommand macro = new MacroCommand(fleet(200_000), tv -> ran::increment,
+                Runnable::run, 4, Duration.ofSeconds(10));
+
+        macro.execute();
+
+        assertEquals(200_000, ran.sum());
+        assertEquals(200_000, macro.getLastResult().getSucceeded());
+    }
+
+    @Test
+    void timeoutStartsWhenTheDeviceRuns() {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            // all eight are started at once, but the single thread runs them one after another
+            MacroCommand macro = new MacroCommand(fleet(8), tv -> () -> sleep(50),
+                    pool, 8, Duration.ofMillis(300));
+
+            macro.execute();
+
+            assertEquals(8, macro.getLastResult().getSucceeded());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void timedOutDevicesKeepTheirSlotUntilTheyReturn() {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        try {
+            MacroCommand macro = new MacroCommand(fleet(6), tv -> () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                // ignores the interrupt, like a device stuck in a blocking call
+                long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(60);
+                while (System.nanoTime() < end) {
+                    Thread.onSpinWait();
+                }
+                running.decrementAndGet();
+            }, pool, 2, Duration.ofMillis(5));
+
+            macro.execute();
+
+            assertEquals(6, macro.getLastResult().getTimedOut());
+            assertTrue(maxRunning.get() <= 2, "ran " + maxRunning.get() + " devices at once");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void failuresAreKeyedByPosition() {
+        // devices built without an id all share id 0
+        List<Television> devices = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            devices.add(new Television());
+        }
+        MacroCommand macro = new MacroCommand(devices, tv -> () -> {
+            throw new IllegalStateException("offline");
+        }, Runnable::run, 2, Duration.ofSeconds(1));
+
+        macro.execute();
+
+        assertEquals(5, macro.getLastResult().getFailures().size());
+        assertTrue(macro.getLastResult().getFailures().keySet().containsAll(List.of(0, 1, 2, 3, 4)));
+    }
+
+    private static List<Television> fleet(int size) {
+        List<Television> fleet = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            fleet.add(new Television(i));
+        }
+        return fleet;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
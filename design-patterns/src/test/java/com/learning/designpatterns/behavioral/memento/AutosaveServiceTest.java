@@ -0,0 +1,61 @@
+package com.learning.designpatterns.behavioral.memento;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AutosaveServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void submitAfterCloseIsRejected() throws InterruptedException {
+        AutosaveService autosave = new AutosaveService(directory.resolve("doc.autosave"));
+        autosave.close();
+
+        TextArea area = new TextArea();
+        area.insert(0, "late");
+        assertThrows(IllegalStateException.class, () -> autosave.submit(area.takeSnapshot()));
+    }
+
+    @Test
+    void lastAcceptedSnapshotIsSavedWhenCloseRacesSubmits() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            Path target = directory.resolve("doc-" + round + ".autosave");
+            AutosaveService autosave = new AutosaveService(target);
+            AtomicReference<String> lastAccepted = new AtomicReference<>();
+            CountDownLatch started = new CountDownLatch(1);
+            Thread editor = new Thread(() -> {
+                TextArea area = new TextArea();
+                for (int i = 0; ; i++) {
+                    area.setText("version " + i);
+                    try {
+                        autosave.submit(area.takeSnapshot());
+                    } catch (IllegalStateException closed) {
+                        return;
+                    }
+                    lastAccepted.set(area.getContent());
+                    started.countDown();
+                }
+            });
+            editor.start();
+            started.await();
+            autosave.close();
+            editor.join();
+
+            TextArea recovered = new TextArea();
+            recovered.restore(AutosaveService.recover(target).orElseThrow());
+            assertEquals(lastAccepted.get(), recovered.getContent());
+            assertFalse(Files.exists(target.resolveSibling(target.getFileName() + ".tmp")));
+        }
+    }
+}
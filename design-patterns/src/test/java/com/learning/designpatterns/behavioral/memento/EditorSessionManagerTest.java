@@ -0,0 +1,92 @@
+package com.learning.designpatterns.behavioral.memento;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EditorSessionManagerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void evictedSessionsAreReloadedAndCanBeUndone() throws Exception {
+        try (EditorSessionManager sessions = new EditorSessionManager(2, directory, 20, TimeUnit.MILLISECONDS, 1 << 20)) {
+            sessions.write("a", "first").join();
+            sessions.write("a", "second").join();
+            awaitEvictions(sessions, 1);
+
+            assertEquals("second", sessions.content("a").join());
+            // nothing to undo after a reload, so this keeps the content
+            sessions.undo("a").join();
+            assertEquals("second", sessions.content("a").join());
+            assertTrue(sessions.metrics().getEvictions() >= 1);
+        }
+    }
+
+    @Test
+    void closedSessionsLeaveNoSavedContent() throws Exception {
+        try (EditorSessionManager sessions = new EditorSessionManager(2, directory, 10, TimeUnit.MILLISECONDS, 1 << 20)) {
+            for (int i = 0; i < 100; i++) {
+                sessions.write("session-" + i, "draft " + i).join();
+            }
+            awaitEvictions(sessions, 50);
+            for (int i = 0; i < 100; i++) {
+                sessions.closeSession("session-" + i).join();
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void closeSavesResidentSessionsOverOlderSavedContent() throws Exception {
+        try (EditorSessionManager sessions = new EditorSessionManager(2, directory, 20, TimeUnit.MILLISECONDS, 1 << 20)) {
+            sessions.write("a", "saved when evicted").join();
+            awaitEvictions(sessions, 1);
+            sessions.write("a", "edited after reload").join();
+            sessions.write("b", "never evicted");
+        }
+        try (EditorSessionManager sessions = new EditorSessionManager(2, directory, 1, TimeUnit.HOURS, 1 << 20)) {
+            assertEquals("edited after reload", sessions.content("a").join());
+            assertEquals("never evicted", sessions.content("b").join());
+        }
+    }
+
+    @Test
+    void sessionReopenedRightAfterCloseStartsEmptyAndKeepsItsContent() throws Exception {
+        try (EditorSessionManager sessions = new EditorSessionManager(4, directory, 10, TimeUnit.MILLISECONDS, 1 << 20)) {
+            for (int i = 0; i < 200; i++) {
+                sessions.write("session-" + i, "old " + i).join();
+            }
+            awaitEvictions(sessions, 200);
+            for (int i = 0; i < 200; i++) {
+                sessions.closeSession("session-" + i);
+                assertEquals("", sessions.content("session-" + i).join());
+                sessions.write("session-" + i, "new " + i);
+            }
+            // let some of the new sessions be evicted behind the deletes as well
+            awaitEvictions(sessions, 300);
+        }
+        try (EditorSessionManager sessions = new EditorSessionManager(4, directory, 1, TimeUnit.HOURS, 1 << 20)) {
+            for (int i = 0; i < 200; i++) {
+                assertEquals("new " + i, sessions.content("session-" + i).join());
+            }
+        }
+    }
+
+    private static void awaitEvictions(EditorSessionManager sessions, long evictions) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sessions.metrics().getEvictions() < evictions && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.learning.designpatterns.behavioral.memento;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HistoryManagerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void heapStaysBoundedUnderManySmallEditsToALargeDocument() throws IOException {
+        long budget = 1 << 20;
+        Random random = new Random(42);
+        try (HistoryManager history = new HistoryManager(budget, 16, directory.resolve("history.spill"))) {
+            TextEditor editor = new TextEditor(history);
+            editor.write(randomText(random, 2_000_000));
+            long baseline = usedHeap();
+
+            for (int i = 0; i < 50_000; i++) {
+                editor.insert(random.nextInt(2_000_000 + i), "x");
+            }
+
+            assertEquals(50_001, history.size());
+            assertTrue(history.getResidentBytes() + history.getCompressedBytes() <= budget);
+            long growth = usedHeap() - baseline;
+            // 50k full copies of the document would be 200GB; a few dozen bytes per edit is fine
+            assertTrue(growth < 64L << 20, "heap grew by " + (growth >> 20) + "MB");
+        }
+    }
+
+    @Test
+    void undoRebuildsCompressedAndSpilledStates() throws IOException {
+        Random random = new Random(7);
+        try (HistoryManager history = new HistoryManager(4_096, 2, directory.resolve("history.spill"))) {
+            TextEditor editor = new TextEditor(history);
+            List<String> contents = new ArrayList<>();
+            editor.write(randomText(random, 5_000));
+            contents.add(editor.getContent());
+            for (int i = 0; i < 300; i++) {
+                int length = editor.getContent().length();
+                int start = random.nextInt(length + 1);
+                switch (i % 3) {
+                    case 0:
+                        editor.insert(start, "edit " + i);
+                        break;
+                    case 1:
+                        editor.delete(start, Math.min(length, start + random.nextInt(20)));
+                        break;
+                    default:
+                        editor.write(editor.getContent().substring(0, start) + i);
+                }
+                contents.add(editor.getContent());
+            }
+            assertTrue(history.getSpilledBytes() > 0);
+
+            for (int i = contents.size() - 2; i >= 0; i--) {
+                editor.undo();
+                assertEquals(contents.get(i), editor.getContent());
+            }
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(26)));
+        }
+        return builder.toString();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,77 @@
+package com.learning.designpatterns.behavioral.memento;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class RopeTest {
+
+    @Test
+    void editsMatchAStringBuilderAndKeepOldVersions() {
+        Random random = new Random(11);
+        Rope rope = Rope.EMPTY;
+        StringBuilder expected = new StringBuilder();
+        Rope saved = null;
+        String savedText = null;
+        for (int i = 0; i < 5_000; i++) {
+            int length = expected.length();
+            // bias towards both ends, where splits produce empty parts
+            int index = i % 4 == 0 ? 0 : i % 4 == 1 ? length : random.nextInt(length + 1);
+            if (length > 0 && random.nextInt(3) == 0) {
+                int end = Math.min(length, index + random.nextInt(2 * Rope.MAX_LEAF));
+                rope = rope.delete(index, end);
+                expected.delete(index, end);
+            } else {
+                String text = "<" + i + ">".repeat(random.nextInt(Rope.MAX_LEAF + 2));
+                rope = rope.insert(index, text);
+                expected.insert(index, text);
+            }
+            if (i == 2_500) {
+                saved = rope;
+                savedText = expected.toString();
+            }
+        }
+
+        assertEquals(expected.toString(), rope.toString());
+        assertEquals(expected.length(), rope.length());
+        assertEquals(savedText, saved.toString());
+        int length = expected.length();
+        assertEquals(expected.substring(0, 0), rope.substring(0, 0));
+        assertEquals(expected.substring(length / 3, length / 2), rope.substring(length / 3, length / 2));
+        assertEquals(expected.substring(0, length), rope.substring(0, length));
+        assertEquals(expected.charAt(length - 1), rope.charAt(length - 1));
+        // balanced: the height stays logarithmic in the number of leaves
+        assertTrue(rope.height() <= 2 * (32 - Integer.numberOfLeadingZeros(length / Rope.MAX_LEAF + 1)) + 2,
+                "height " + rope.height());
+    }
+
+    @Test
+    void emptyEditsReturnTheSameRopeAndBadIndexesAreRejected() {
+        Rope rope = Rope.of("abc");
+
+        assertSame(rope, rope.insert(3, ""));
+        assertSame(rope, rope.delete(1, 1));
+        assertEquals("", rope.delete(0, 3).toString());
+        assertEquals("abc", Rope.EMPTY.insert(0, "abc").toString());
+        assertThrows(IndexOutOfBoundsException.class, () -> rope.insert(4, "x"));
+        assertThrows(IndexOutOfBoundsException.class, () -> rope.delete(2, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> rope.substring(0, 4));
+    }
+
+    @Test
+    void matchesCommonEndsAcrossLeaves() {
+        String text = "x".repeat(3 * Rope.MAX_LEAF);
+        Rope rope = Rope.of(text).insert(Rope.MAX_LEAF, "y");
+
+        assertEquals(Rope.MAX_LEAF, rope.matchPrefix(text, 0));
+        assertEquals(2 * Rope.MAX_LEAF, rope.matchSuffix(text, text.length(), Integer.MAX_VALUE));
+        assertEquals(10, rope.matchSuffix(text, text.length(), 10));
+        assertEquals(0, Rope.EMPTY.matchPrefix(text, 0));
+        assertEquals(0, rope.matchSuffix("", 0, Integer.MAX_VALUE));
+    }
+}
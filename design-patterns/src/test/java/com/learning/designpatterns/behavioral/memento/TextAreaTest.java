@@ -0,0 +1,96 @@
+package com.learning.designpatterns.behavioral.memento;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TextAreaTest {
+
+    @Test
+    void setTextHandlesChangesAtTheEdges() {
+        String large = text(new Random(3), 5_000);
+        String[] contents = {
+                "", "abc", "abc", "xabc", "xab", "ab", "", "aaaa", "aa", "aaaa", "abab", "ba",
+                large, large, large + "!", "!" + large, large.substring(1, 4_000) + "?" + large.substring(4_100),
+                "", large
+        };
+        TextArea area = new TextArea();
+        for (String content : contents) {
+            area.setText(content);
+            assertEquals(content, area.getContent());
+            assertEquals(content.length(), area.length());
+        }
+    }
+
+    @Test
+    void diffsRoundTripAtTheEdges() {
+        TextArea area = new TextArea();
+        List<TextArea.Memento> snapshots = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        String large = text(new Random(5), 3_000);
+        snapshots.add(area.takeSnapshot());
+        contents.add("");
+        String[] edits = {"insert start", "insert end", "delete start", "delete end", "delete all",
+                "set large", "insert middle", "set same", "replace all"};
+        for (String edit : edits) {
+            switch (edit) {
+                case "insert start":
+                    area.insert(0, "head ");
+                    break;
+                case "insert end":
+                    area.insert(area.length(), " tail");
+                    break;
+                case "delete start":
+                    area.delete(0, 2);
+                    break;
+                case "delete end":
+                    area.delete(area.length() - 2, area.length());
+                    break;
+                case "delete all":
+                    area.delete(0, area.length());
+                    break;
+                case "set large":
+                    area.setText(large);
+                    break;
+                case "insert middle":
+                    area.insert(1_500, "middle");
+                    break;
+                case "set same":
+                    area.setText(area.getContent());
+                    break;
+                default:
+                    area.setText("x");
+            }
+            snapshots.add(area.takeSnapshot());
+            contents.add(area.getContent());
+        }
+
+        for (int older = 0; older < snapshots.size(); older++) {
+            for (int newer = older + 1; newer < snapshots.size(); newer++) {
+                // consecutive snapshots reuse the diff they carry, the others are compared
+                byte[] diff = TextArea.encodeDiff(snapshots.get(older), snapshots.get(newer));
+                TextArea.Memento rebuilt = TextArea.decodeDiff(snapshots.get(newer), diff);
+                assertEquals(contents.get(older), content(rebuilt), older + " from " + newer);
+            }
+        }
+        area.restore(TextArea.decodeDiff(snapshots.get(1), TextArea.encodeDiff(snapshots.get(0), snapshots.get(1))));
+        assertEquals("", area.getContent());
+    }
+
+    private static String content(TextArea.Memento memento) {
+        return new String(TextArea.encode(memento), StandardCharsets.UTF_8);
+    }
+
+    private static String text(Random random, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(3)));
+        }
+        return builder.toString();
+    }
+}
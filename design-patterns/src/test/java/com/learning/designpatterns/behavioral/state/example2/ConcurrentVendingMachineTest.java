@@ -0,0 +1,66 @@
+package com.learning.designpatterns.behavioral.state.example2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+
+class ConcurrentVendingMachineTest {
+
+    @Test
+    void contendedEventsNeitherLoseNorReuseCoins() throws InterruptedException {
+        ConcurrentVendingMachine machine = new ConcurrentVendingMachine();
+        LongAdder accepted = new LongAdder();
+        LongAdder dispensed = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 100_000; i++) {
+                    if (random.nextBoolean()) {
+                        if (machine.insertCoin()) {
+                            accepted.increment();
+                        }
+                    } else if (machine.pressButton()) {
+                        dispensed.increment();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // every item took exactly one accepted coin, apart from a coin still in the machine
+        int coinLeft = machine.getState() == VendingMachine.HAS_COIN ? 1 : 0;
+        assertEquals(accepted.sum() - coinLeft, dispensed.sum());
+        assertTrue(dispensed.sum() > 0);
+    }
+
+    @Test
+    void reportsWhatEachEventDid() {
+        ConcurrentVendingMachine machine = new ConcurrentVendingMachine();
+
+        assertFalse(machine.pressButton());
+        assertTrue(machine.insertCoin());
+        assertFalse(machine.insertCoin());
+        assertEquals(VendingMachine.HAS_COIN, machine.getState());
+        assertTrue(machine.pressButton());
+        assertEquals(VendingMachine.NO_COIN, machine.getState());
+        assertThrows(IllegalArgumentException.class, () -> machine.apply(2));
+    }
+}
@@ -0,0 +1,68 @@
+package com.learning.designpatterns.behavioral.state.example2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+class VendingFleetTest {
+
+    @Test
+    void batchesMatchMachinesDrivenOneByOne() {
+        int machines = 1000;
+        VendingFleet fleet = new VendingFleet(machines, 7, new ForkJoinPool(4));
+        // the same table VendingMachine fires, without its printed messages
+        int[] reference = new int[machines];
+        Random random = new Random(42);
+        long dispensed = 0;
+        for (int batch = 0; batch < 20; batch++){
+            int count = random.nextInt(5000);
+            int[] ids = new int[count];
+            byte[] events = new byte[count];
+            for (int i = 0; i < count; i++){
+                // few machines, so most see several events per batch and their order matters
+                ids[i] = random.nextInt(machines);
+                events[i] = (byte) random.nextInt(2);
+                if (reference[ids[i]] == VendingMachine.HAS_COIN && events[i] == VendingMachine.PRESS_BUTTON){
+                    dispensed++;
+                }
+                reference[ids[i]] = VendingMachine.MACHINE.next(reference[ids[i]], events[i]);
+            }
+            fleet.apply(ids, events, count);
+        }
+
+        long withCoin = 0;
+        for (int i = 0; i < machines; i++){
+            assertEquals(reference[i], fleet.state(i));
+            withCoin += reference[i] == VendingMachine.HAS_COIN ? 1 : 0;
+        }
+        assertEquals(withCoin, fleet.machinesIn(VendingMachine.HAS_COIN));
+        assertEquals(machines - withCoin, fleet.machinesIn(VendingMachine.NO_COIN));
+        assertEquals(dispensed, fleet.transitions(VendingMachine.HAS_COIN, VendingMachine.PRESS_BUTTON));
+    }
+
+    @Test
+    void batchWithAnOutOfRangeEventOrMachineIsRejectedWhole() {
+        VendingFleet fleet = new VendingFleet(10, 3, new ForkJoinPool(2));
+
+        // event 2 of NO_COIN would otherwise be event 0 of HAS_COIN
+        assertThrows(IllegalArgumentException.class,
+                () -> fleet.apply(new int[]{0, 1}, new byte[]{VendingMachine.INSERT_COIN, 2}, 2));
+        assertThrows(IllegalArgumentException.class,
+                () -> fleet.apply(new int[]{0, 1}, new byte[]{VendingMachine.INSERT_COIN, -1}, 2));
+        assertThrows(IllegalArgumentException.class,
+                () -> fleet.apply(new int[]{0, 10}, new byte[]{VendingMachine.INSERT_COIN, VendingMachine.INSERT_COIN}, 2));
+        assertThrows(IllegalArgumentException.class,
+                () -> fleet.apply(new int[]{0}, new byte[]{VendingMachine.INSERT_COIN}, 2));
+
+        assertEquals(VendingMachine.NO_COIN, fleet.state(0));
+        assertEquals(10, fleet.machinesIn(VendingMachine.NO_COIN));
+        assertEquals(0, fleet.transitions(VendingMachine.NO_COIN, VendingMachine.INSERT_COIN));
+        assertThrows(IllegalArgumentException.class, () -> fleet.machinesIn(2));
+        assertThrows(IllegalArgumentException.class,
+                () -> fleet.transitions(VendingMachine.NO_COIN, 2));
+    }
+}
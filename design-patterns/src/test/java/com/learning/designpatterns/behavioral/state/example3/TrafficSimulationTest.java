@@ -0,0 +1,83 @@
+package com.learning.designpatterns.behavioral.state.example3;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+class TrafficSimulationTest {
+
+    private static final Duration TICK = Duration.ofMillis(1);
+    // red 3 ticks, yellow 1, green 2 (rounded up)
+    private static final Duration RED = Duration.ofMillis(3);
+    private static final Duration YELLOW = Duration.ofNanos(1);
+    private static final Duration GREEN = Duration.ofMillis(2);
+    private static final int[] DWELL = {3, 1, 2, 1};
+
+    @Test
+    void lightsFollowTheirDwellTimesAcrossBatchesAndPartitions() throws InterruptedException {
+        int intersections = 50;
+        try (TrafficSimulation simulation = new TrafficSimulation(intersections, TICK, RED, YELLOW, GREEN, 3)) {
+            // more ticks than one batch, and a second run continuing where the first stopped
+            TrafficSimulation.Report first = simulation.run(700, Double.POSITIVE_INFINITY);
+            TrafficSimulation.Report second = simulation.run(301, Double.POSITIVE_INFINITY);
+
+            assertEquals(1_001, simulation.currentTick());
+            long transitions = 0;
+            int[] perState = new int[DWELL.length];
+            for (int i = 0; i < intersections; i++) {
+                int[] expected = expected(i, 1_001);
+                assertEquals(expected[0], simulation.intersection(i).getState(), "light " + i);
+                perState[expected[0]]++;
+                transitions += expected[1];
+            }
+            assertEquals(transitions, first.getTransitions() + second.getTransitions());
+            for (int state = 0; state < DWELL.length; state++) {
+                assertEquals(perState[state], simulation.lightsIn(state));
+            }
+        }
+    }
+
+    @Test
+    void realTimeRunsTakeTheirSimulatedTime() throws InterruptedException {
+        try (TrafficSimulation simulation = new TrafficSimulation(10, TICK, RED, YELLOW, GREEN, 2)) {
+            TrafficSimulation.Report report = simulation.run(50, 1);
+
+            assertEquals(50, report.getTicks());
+            assertTrue(report.getElapsedNanos() >= Duration.ofMillis(49).toNanos(), report.toString());
+            assertTrue(report.getMaxLagNanos() >= report.getMeanLagNanos());
+        }
+    }
+
+    @Test
+    void invalidArgumentsAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TrafficSimulation(0, TICK, RED, YELLOW, GREEN, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new TrafficSimulation(1, Duration.ZERO, RED, YELLOW, GREEN, 1));
+        try (TrafficSimulation simulation = new TrafficSimulation(1, TICK, RED, YELLOW, GREEN, 1)) {
+            assertThrows(IllegalArgumentException.class, () -> simulation.run(1, 0));
+        }
+    }
+
+    /**
+     * State of light i after the given ticks and the number of changes it made, stepping one
+     * tick at a time; its first change is at 1 + i % red, as the simulation staggers them.
+     */
+    private static int[] expected(int i, long ticks) {
+        int state = TrafficLight.RED;
+        int changes = 0;
+        long next = 1 + i % DWELL[TrafficLight.RED];
+        for (long tick = 1; tick <= ticks; tick++) {
+            if (tick == next) {
+                state = TrafficLight.MACHINE.next(state, TrafficLight.CHANGE);
+                changes++;
+                next = tick + DWELL[state];
+            }
+        }
+        return new int[]{state, changes};
+    }
+}
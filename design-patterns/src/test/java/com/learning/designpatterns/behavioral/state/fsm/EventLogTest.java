@@ -0,0 +1,142 @@
+package com.learning.designpatterns.behavioral.state.fsm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EventLogTest {
+
+    // a counter that goes 0 -> 1 -> 2 -> 0 on NEXT and back to 0 on RESET
+    private static final StateMachine<AtomicInteger> MACHINE = StateMachine.<AtomicInteger>builder(
+                    new String[]{"ZERO", "ONE", "TWO"}, new String[]{"NEXT", "RESET"})
+            .on(0, 0, 1, AtomicInteger::incrementAndGet)
+            .on(1, 0, 2, AtomicInteger::incrementAndGet)
+            .on(2, 0, 0, AtomicInteger::incrementAndGet)
+            .on(1, 1, 0, null)
+            .on(2, 1, 0, null)
+            .build();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversFromBackgroundSnapshotsAndTheEventsAfterThem() throws IOException {
+        int contexts = 100;
+        int events = 200_000;
+        int[] expected = new int[contexts];
+        SplittableRandom random = new SplittableRandom(3);
+        try (EventLog<AtomicInteger> log = EventLog.open(directory, MACHINE, contexts, 5 * 1_000, 1_000)) {
+            for (int i = 0; i < events; i++) {
+                int context = random.nextInt(contexts);
+                int event = random.nextInt(4) == 0 ? 1 : 0;
+                expected[context] = MACHINE.next(expected[context], event);
+                assertEquals(expected[context], log.append(context, event));
+            }
+            assertNull(log.getLastSnapshotError());
+        }
+
+        try (EventLog<AtomicInteger> log = EventLog.open(directory, MACHINE, contexts, 5 * 1_000, 1_000)) {
+            assertEquals(events, log.sequence());
+            assertTrue(log.replayed() < 3_000, "replayed " + log.replayed());
+            for (int context = 0; context < contexts; context++) {
+                assertEquals(expected[context], log.state(context));
+            }
+        }
+        // covered segments and older snapshots are gone
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.count() <= 5);
+        }
+    }
+
+    @Test
+    void fireRunsTheActionAndLogsTheEvent() throws IOException {
+        AtomicInteger counter = new AtomicInteger();
+        try (EventLog<AtomicInteger> log = EventLog.open(directory, MACHINE, 2, 4_096, 1_000)) {
+            assertEquals(1, log.fire(counter, 1, 0));
+            assertEquals(2, log.fire(counter, 1, 0));
+            assertEquals(0, log.fire(counter, 1, 1));
+            assertEquals(1, log.fire(counter, 1, 0));
+        }
+        assertEquals(3, counter.get());
+
+        try (EventLog<AtomicInteger> log = EventLog.open(directory, MACHINE, 2, 4_096, 1_000)) {
+            assertEquals(1, log.state(1));
+            assertEquals(0, log.state(0));
+            assertEquals(4, log.replayed());
+        }
+        // replay restores states without running actions again
+        assertEquals(3, counter.get());
+    }
+
+    @Test
+    void replayStopsAtATornRecordAndCutsTheLogThere() throws IOException {
+        try (EventLog<AtomicInteger> log = EventLog.open(directory, MACHINE, 4, 4_096, 1_000)) {
+            for (int i = 0; i < 10; i++){
+                log.append(i % 4, 0);
+            }
+        }
+        // record 5 gets a context id far out of range, record 6 a bad check byte
+        try (FileChannel segment = FileChannel.open(directory.resolve("events-00000000.log"), StandardOpenOption.WRITE)) {
+            segment.write(ByteBuffer.allocate(6).putInt(1_000_000).put((byte) 1).put((byte) 0).flip(), 5 * 6);
+            segment.write(ByteBuffer.allocate(1).put((byte) 0x7f).flip(), 6 * 6 + 5);
+        }
+
+        try (EventLog<AtomicInteger> log = EventLog.open(directory, MACHINE, 4, 4_096, 1_000)) {
+            assertEquals(5, log.sequence());
+            assertEquals(2, log.state(0));
+            assertEquals(1, log.state(1));
+            log.append(3, 1);
+        }
+        // the records after the torn one are gone for good
+        try (EventLog<AtomicInteger> log = EventLog.open(directory, MACHINE, 4, 4_096, 1_000)) {
+            assertEquals(6, log.sequence());
+            assertEquals(1, log.state(1));
+            assertEquals(1, log.state(2));
+            assertEquals(0, log.state(3));
+        }
+    }
+
+    @Test
+    void reopeningWithADifferentLayoutFails() throws IOException {
+        try (EventLog<AtomicInteger> log = EventLog.open(directory, MACHINE, 4, 4_096, 10)) {
+            for (int i = 0; i < 25; i++){
+                log.append(i % 4, 0);
+            }
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> EventLog.open(directory, MACHINE, 4, 8_192, 10));
+        assertThrows(IllegalArgumentException.class, () -> EventLog.open(directory, MACHINE, 5, 4_096, 10));
+        try (EventLog<AtomicInteger> log = EventLog.open(directory, MACHINE, 4, 4_096, 10)) {
+            assertEquals(25, log.sequence());
+        }
+    }
+
+    @Test
+    void unreadableSnapshotIsAnError() throws IOException {
+        try (EventLog<AtomicInteger> log = EventLog.open(directory, MACHINE, 4, 4_096, 1_000)) {
+            log.append(0, 0);
+            log.snapshot();
+        }
+        Path snapshot;
+        try (Stream<Path> files = Files.list(directory)) {
+            snapshot = files.filter(f -> f.getFileName().toString().startsWith("snapshot-")).findFirst().orElseThrow();
+        }
+        Files.write(snapshot, new byte[3]);
+
+        assertThrows(IOException.class, () -> EventLog.open(directory, MACHINE, 4, 4_096, 1_000));
+    }
+}
@@ -0,0 +1,39 @@
+package com.learning.designpatterns.behavioral.state.fsm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class StateMachineTest {
+
+    private final StateMachine<AtomicInteger> machine = StateMachine.<AtomicInteger>builder(
+                    new String[]{"OFF", "ON"}, new String[]{"TOGGLE", "RESET"})
+            .on(0, 0, 1, AtomicInteger::incrementAndGet)
+            .on(1, 0, 0, null)
+            .build();
+
+    @Test
+    void firesTransitionsAndActions() {
+        AtomicInteger switchedOn = new AtomicInteger();
+
+        assertEquals(1, machine.fire(switchedOn, 0, 0));
+        assertEquals(0, machine.fire(switchedOn, 1, 0));
+        assertEquals(1, machine.fire(switchedOn, 1, 1));
+        assertEquals(1, switchedOn.get());
+    }
+
+    @Test
+    void outOfRangeEventsAndStatesAreRejected() {
+        AtomicInteger context = new AtomicInteger();
+
+        // event 2 of state 0 would otherwise be event 0 of state 1
+        assertThrows(IllegalArgumentException.class, () -> machine.fire(context, 0, 2));
+        assertThrows(IllegalArgumentException.class, () -> machine.fire(context, 0, -1));
+        assertThrows(IllegalArgumentException.class, () -> machine.fire(context, 2, 0));
+        assertThrows(IllegalArgumentException.class, () -> machine.next(0, 2));
+        assertEquals(0, context.get());
+    }
+}